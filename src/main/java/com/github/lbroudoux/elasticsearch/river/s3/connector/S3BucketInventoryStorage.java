@@ -0,0 +1,70 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+/**
+ * Inventory reports storage backed by the destination bucket of Amazon S3 Inventory.
+ * @author laurent
+ */
+public class S3BucketInventoryStorage implements S3InventoryStorage{
+
+   private final AmazonS3Client s3Client;
+   private final String bucketName;
+
+
+   public S3BucketInventoryStorage(AmazonS3Client s3Client, String bucketName){
+      this.s3Client = s3Client;
+      this.bucketName = bucketName;
+   }
+
+   @Override
+   public List<String> listFolders(String prefix) throws IOException{
+      List<String> folders = new ArrayList<String>();
+      ObjectListing listing = s3Client.listObjects(new ListObjectsRequest().withBucketName(bucketName)
+            .withPrefix(prefix).withDelimiter("/"));
+      while (true){
+         folders.addAll(listing.getCommonPrefixes());
+         if (!listing.isTruncated()){
+            return folders;
+         }
+         listing = s3Client.listNextBatchOfObjects(listing);
+      }
+   }
+
+   @Override
+   public InputStream open(String key) throws IOException{
+      try{
+         return s3Client.getObject(bucketName, key).getObjectContent();
+      } catch (AmazonS3Exception ase){
+         if (ase.getStatusCode() == 404){
+            return null;
+         }
+         throw ase;
+      }
+   }
+}
@@ -18,22 +18,35 @@
  */
 package com.github.lbroudoux.elasticsearch.river.s3.connector;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
 
 import com.amazonaws.auth.InstanceProfileCredentialsProvider;
 import com.amazonaws.services.s3.model.*;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.github.lbroudoux.elasticsearch.river.s3.river.LatencyHistogram;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3KeyMatcher;
 import com.github.lbroudoux.elasticsearch.river.s3.river.S3RiverFeedDefinition;
 /**
  * This is a connector for querying and retrieving files or folders from
@@ -43,6 +56,9 @@ import com.github.lbroudoux.elasticsearch.river.s3.river.S3RiverFeedDefinition;
 public class S3Connector{
 
    private static final ESLogger logger = Loggers.getLogger(S3Connector.class);
+
+   /** The delimiter used for discovering sub-prefixes of path prefix. */
+   private static final String DELIMITER = "/";
    
    private final String accessKey;
    private final String secretKey;
@@ -50,14 +66,21 @@ public class S3Connector{
    private String bucketName;
    private String pathPrefix;
    private AmazonS3Client s3Client;
+   private int listingConcurrency = 1;
+   private List<String> listingSplitPoints;
+   private S3InventoryReader inventoryReader;
+   private S3MultiRangeDownloader downloader;
+   private final boolean shared;
+   private final AtomicLong requestCount;
+   private final LatencyHistogram listLatency;
+   private final LatencyHistogram getLatency;
 
    /**
     * Create a S3Connector with security credentials. This is helpful if you want
     * to use IAM Roles as described here http://docs.aws.amazon.com/AWSSdkDocsJava/latest/DeveloperGuide/java-dg-roles.html.
     */
    public S3Connector(boolean useIAMRoleForEC2) {
-      this.accessKey = null;
-      this.secretKey = null;
+      this(null, null);
       this.useIAMRoleForEC2 = useIAMRoleForEC2;
    }
 
@@ -69,6 +92,40 @@ public class S3Connector{
    public S3Connector(String accessKey, String secretKey){
       this.accessKey = accessKey;
       this.secretKey = secretKey;
+      this.shared = false;
+      this.requestCount = new AtomicLong();
+      this.listLatency = new LatencyHistogram();
+      this.getLatency = new LatencyHistogram();
+   }
+   
+   /**
+    * Create a S3Connector on an already connected Amazon S3 client.
+    * @param s3Client The client to use for querying S3
+    * @param bucketName Name of the bucket to connect to
+    * @param pathPrefix Prefix that will be later used for filtering documents
+    */
+   S3Connector(AmazonS3Client s3Client, String bucketName, String pathPrefix){
+      this(null, null);
+      this.s3Client = s3Client;
+      this.bucketName = bucketName;
+      this.pathPrefix = pathPrefix;
+   }
+
+   /** Create a S3Connector sharing client, downloads threads and metrics of a connected one. */
+   private S3Connector(S3Connector connector, String bucketName, String pathPrefix){
+      this.accessKey = connector.accessKey;
+      this.secretKey = connector.secretKey;
+      this.useIAMRoleForEC2 = connector.useIAMRoleForEC2;
+      this.shared = true;
+      this.s3Client = connector.s3Client;
+      this.bucketName = bucketName;
+      this.pathPrefix = pathPrefix;
+      this.requestCount = connector.requestCount;
+      this.listLatency = connector.listLatency;
+      this.getLatency = connector.getLatency;
+      if (connector.downloader != null){
+         this.downloader = connector.downloader.forBucket(bucketName);
+      }
    }
    
    /**
@@ -96,7 +153,106 @@ public class S3Connector{
       // more appropriate... However, this later returns true even for non existing buckets !
       s3Client.getBucketLocation(bucketName);
    }
+
+   /**
+    * Get a connector to another bucket or path prefix that shares the client, the parallel
+    * download threads and the metrics of this one. Listing and inventory settings are not
+    * shared. Must be called once connected and parallel download set up.
+    * @param bucketName Name of the bucket to connect to
+    * @param pathPrefix Prefix that will be later used for filtering documents
+    * @return A connector to this bucket, whose close() does not release shared resources
+    * @throws AmazonS3Exception when bucket does not exists or cannot be accessed
+    */
+   public S3Connector connectFeed(String bucketName, String pathPrefix) throws AmazonS3Exception{
+      if (!bucketName.equals(this.bucketName)){
+         s3Client.getBucketLocation(bucketName);
+      }
+      return new S3Connector(this, bucketName, pathPrefix);
+   }
    
+   /**
+    * Connect to an Amazon SQS queue receiving the event notifications of bucket, using
+    * the same authentication process as for the bucket.
+    * @param queueUrl The url of queue
+    * @return A source of bucket events
+    */
+   public S3EventSource connectEventQueue(String queueUrl){
+      AmazonSQSClient sqsClient;
+      if (accessKey != null && secretKey != null) {
+         sqsClient = new AmazonSQSClient(new BasicAWSCredentials(accessKey, secretKey));
+      } else if (useIAMRoleForEC2) {
+         sqsClient = new AmazonSQSClient(new InstanceProfileCredentialsProvider());
+      } else {
+         sqsClient = new AmazonSQSClient();
+      }
+      return new SqsS3EventSource(sqsClient, queueUrl);
+   }
+
+   /**
+    * Read the objects of bucket from its Amazon S3 Inventory reports instead of listing it.
+    * Must be called once connected to bucket.
+    * @param inventoryBucket The destination bucket of inventory reports
+    * @param inventoryPrefix The prefix of inventory configuration into destination bucket
+    */
+   public void setInventory(String inventoryBucket, String inventoryPrefix){
+      setInventoryReader(new S3InventoryReader(new S3BucketInventoryStorage(s3Client, inventoryBucket), inventoryPrefix));
+   }
+
+   /**
+    * Set the inventory reports reader to use instead of listing bucket.
+    * @param inventoryReader The reader of inventory reports, null for listing bucket
+    */
+   public void setInventoryReader(S3InventoryReader inventoryReader){
+      this.inventoryReader = inventoryReader;
+   }
+
+   /**
+    * Download objects larger than part size by fetching parts concurrently when they are
+    * downloaded into a local file. Must be called once connected to bucket.
+    * @param partSize The size of parts to download
+    * @param parallelism The maximum number of parts downloaded concurrently
+    */
+   public void setParallelDownload(long partSize, int parallelism){
+      if (downloader != null && !shared){
+         downloader.close();
+      }
+      downloader = new S3MultiRangeDownloader(s3Client, bucketName, partSize, parallelism, requestCount);
+   }
+
+   /**
+    * Tell if an object would be downloaded in many concurrent parts by {@link #download(S3ObjectSummary, File)}.
+    * @param summary The summary of the S3 Object to download
+    * @return true if parallel download is enabled and object is larger than part size
+    */
+   public boolean isParallelDownload(S3ObjectSummary summary){
+      return downloader != null && downloader.accept(summary);
+   }
+
+   /** Release resources held by this connector, unless they are shared with the one it comes from. */
+   public void close(){
+      if (downloader != null && !shared){
+         downloader.close();
+      }
+   }
+
+   /**
+    * Set the number of partitions of the bucket listed concurrently. Default is 1,
+    * meaning that bucket is listed sequentially.
+    * @param listingConcurrency Maximum number of concurrent listings
+    */
+   public void setListingConcurrency(int listingConcurrency){
+      this.listingConcurrency = listingConcurrency;
+   }
+
+   /**
+    * Set the keys splitting the bucket into partitions when listing concurrency is enabled.
+    * If not set, partitions are discovered from sub-prefixes of path prefix.
+    * @param listingSplitPoints Sorted keys delimiting partitions
+    */
+   public void setListingSplitPoints(List<String> listingSplitPoints){
+      this.listingSplitPoints = listingSplitPoints;
+   }
+
    /**
     * Select and retrieves summaries of object into bucket and of given path prefix
     * that have modification date younger than lastScanTime.
@@ -104,95 +260,302 @@ public class S3Connector{
     * @return Summaries of picked objects.
     */
    public S3ObjectSummaries getObjectSummaries(Long lastScanTime){
+      return getObjectSummaries(lastScanTime, S3KeyMatcher.ALL);
+   }
+
+   /**
+    * Select and retrieves summaries of object into bucket and of given path prefix
+    * that have modification date younger than lastScanTime and that are indexable
+    * regarding the given matcher. Objects that are not indexable are neither picked
+    * nor part of the returned keys.
+    * @param lastScanTime Last modification date filter
+    * @param keyMatcher Includes and excludes rules filter
+    * @return Summaries of picked objects.
+    */
+   public S3ObjectSummaries getObjectSummaries(Long lastScanTime, S3KeyMatcher keyMatcher){
+      final List<String> keys = new ArrayList<String>();
+      final List<S3ObjectSummary> result = new ArrayList<S3ObjectSummary>();
+      final AtomicLong listed = new AtomicLong();
+      Long lastScanTimeToReturn;
+      try{
+         lastScanTimeToReturn = listObjectSummaries(lastScanTime, keyMatcher, new S3ObjectSummariesListener() {
+            @Override
+            public synchronized void onPage(String partition, S3ObjectSummaries page) {
+               keys.addAll(page.getKeys());
+               result.addAll(page.getPickedSummaries());
+               listed.addAndGet(page.getListedCount());
+            }
+         });
+      } catch (InterruptedException ie){
+         Thread.currentThread().interrupt();
+         throw new AmazonClientException("Interrupted while listing bucket " + bucketName, ie);
+      }
+      
+      // Wrap results and latest scan time.
+      return new S3ObjectSummaries(lastScanTimeToReturn, result, keys, (int) listed.get());
+   }
+
+   /**
+    * Stream summaries of object into bucket and of given path prefix to a listener, one
+    * listing page at a time. Pages carry the indexable keys of this page and the summaries
+    * of objects that have modification date younger than lastScanTime. When listing
+    * concurrency is enabled, listener is called concurrently from different partitions.
+    * When an inventory reader is set, objects come from latest inventory report instead.
+    * @param lastScanTime Last modification date filter
+    * @param keyMatcher Includes and excludes rules filter
+    * @param listener The listener receiving pages as they arrive
+    * @return The scan time to record once every page has been processed
+    * @throws InterruptedException if interrupted while listing or within listener
+    */
+   public Long listObjectSummaries(Long lastScanTime, final S3KeyMatcher keyMatcher,
+         final S3ObjectSummariesListener listener) throws InterruptedException{
       if (logger.isDebugEnabled()){
          logger.debug("Getting buckets changes since {}", lastScanTime);
       }
-      List<String> keys = new ArrayList<String>();
-      List<S3ObjectSummary> result = new ArrayList<S3ObjectSummary>();
       
+      if (inventoryReader != null){
+         // Inventory report gives objects as they were at report creation time.
+         try{
+            return inventoryReader.listObjectSummaries(bucketName, pathPrefix, lastScanTime, keyMatcher, listener);
+         } catch (IOException ioe){
+            throw new AmazonClientException("Error while reading inventory of bucket " + bucketName, ioe);
+         }
+      }
+
       // Store the scan time to return before doing big queries...
       Long lastScanTimeToReturn = System.currentTimeMillis();
       if (lastScanTime == null){
          lastScanTime = 0L;
       }
-      
+      final long modifiedSince = lastScanTime;
+
+      List<ListingPartition> partitions = buildListingPartitions();
+      if (partitions.size() == 1){
+         listPartition(partitions.get(0), modifiedSince, keyMatcher, listener);
+      } else {
+         // List partitions concurrently.
+         ExecutorService executor = Executors.newFixedThreadPool(Math.min(listingConcurrency, partitions.size()),
+               EsExecutors.daemonThreadFactory("s3_river_lister"));
+         try{
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final ListingPartition partition : partitions){
+               futures.add(executor.submit(new Callable<Void>() {
+                  @Override
+                  public Void call() throws Exception {
+                     listPartition(partition, modifiedSince, keyMatcher, listener);
+                     return null;
+                  }
+               }));
+            }
+            for (Future<Void> future : futures){
+               future.get();
+            }
+         } catch (ExecutionException ee){
+            if (ee.getCause() instanceof RuntimeException){
+               throw (RuntimeException) ee.getCause();
+            } else if (ee.getCause() instanceof InterruptedException){
+               throw (InterruptedException) ee.getCause();
+            }
+            throw new AmazonClientException("Error while listing bucket " + bucketName, ee.getCause());
+         } finally {
+            executor.shutdownNow();
+         }
+      }
+      return lastScanTimeToReturn;
+   }
+
+   /**
+    * Build the partitions of the bucket to list. Without listing concurrency, the whole
+    * path prefix is a single partition. Otherwise, partitions are either key ranges between
+    * configured split points or discovered sub-prefixes of path prefix.
+    */
+   private List<ListingPartition> buildListingPartitions(){
+      List<ListingPartition> partitions = new ArrayList<ListingPartition>();
+      if (listingConcurrency <= 1){
+         partitions.add(new ListingPartition(pathPrefix, null, null, null));
+      } else if (listingSplitPoints != null && !listingSplitPoints.isEmpty()){
+         // Each partition starts after previous split point and ends at its own split point (inclusive).
+         String marker = null;
+         for (String splitPoint : listingSplitPoints){
+            partitions.add(new ListingPartition(pathPrefix, null, marker, splitPoint));
+            marker = splitPoint;
+         }
+         partitions.add(new ListingPartition(pathPrefix, null, marker, null));
+      } else {
+         // Objects directly under path prefix are a partition on their own, then each sub-prefix.
+         partitions.add(new ListingPartition(pathPrefix, DELIMITER, null, null));
+         ListObjectsRequest request = new ListObjectsRequest().withBucketName(bucketName)
+               .withPrefix(pathPrefix).withDelimiter(DELIMITER);
+         ObjectListing listing = listObjects(request);
+         while (true){
+            for (String commonPrefix : listing.getCommonPrefixes()){
+               partitions.add(new ListingPartition(commonPrefix, null, null, null));
+            }
+            if (!listing.isTruncated()){
+               break;
+            }
+            listing = listNextBatchOfObjects(listing);
+         }
+      }
+      if (logger.isDebugEnabled()){
+         logger.debug("Listing bucket {} using {} partitions", bucketName, partitions.size());
+      }
+      return partitions;
+   }
+
+   /** List a partition of bucket, giving indexable keys and picked summaries to listener page by page. */
+   private void listPartition(ListingPartition partition, long lastScanTime, S3KeyMatcher keyMatcher,
+         S3ObjectSummariesListener listener) throws InterruptedException{
       ListObjectsRequest request = new ListObjectsRequest().withBucketName(bucketName)
-            .withPrefix(pathPrefix);
-      ObjectListing listing = s3Client.listObjects(request);
+            .withPrefix(partition.prefix).withDelimiter(partition.delimiter).withMarker(partition.marker);
+      ObjectListing listing = listObjects(request);
       logger.debug("Listing: {}", listing);
-      while (!listing.getObjectSummaries().isEmpty() || listing.isTruncated()){
+      boolean beyondLastKey = false;
+      while (!beyondLastKey && (!listing.getObjectSummaries().isEmpty() || listing.isTruncated())){
          List<S3ObjectSummary> summaries = listing.getObjectSummaries();
          if (logger.isDebugEnabled()){
             logger.debug("Found {} items in this listObjects page", summaries.size());
          }
+         List<String> keys = new ArrayList<String>(summaries.size());
+         List<S3ObjectSummary> result = new ArrayList<S3ObjectSummary>();
+         int listed = 0;
          for (S3ObjectSummary summary : summaries){
             if (logger.isDebugEnabled()){
                logger.debug("Getting {} last modified on {}", summary.getKey(), summary.getLastModified());
             }
+            if (partition.lastKey != null && summary.getKey().compareTo(partition.lastKey) > 0){
+               // We're beyond this partition upper bound.
+               beyondLastKey = true;
+               break;
+            }
+            listed++;
+            if (!keyMatcher.isIndexable(summary.getKey())){
+               continue;
+            }
             keys.add(summary.getKey());
             if (summary.getLastModified().getTime() > lastScanTime){
                logger.debug("  Picked !");
                result.add(summary);
             }
          }
-         listing = s3Client.listNextBatchOfObjects(listing);
+         listener.onPage(partition.getId(), new S3ObjectSummaries(null, result, keys, listed));
+         if (!beyondLastKey){
+            listing = listNextBatchOfObjects(listing);
+         }
       }
-      
-      // Wrap results and latest scan time.
-      return new S3ObjectSummaries(lastScanTimeToReturn, result, keys);
    }
    
-   public Map<String,Object> getS3UserMetadata(String key){ 
-	   return Collections.<String, Object>unmodifiableMap(s3Client.getObjectMetadata(bucketName, key).getUserMetadata());
+   /**
+    * Retrieve Amazon S3 file content along with its metadata using a single GET request.
+    * Content is not buffered so caller is responsible for closing it once done. Closing
+    * content before reaching its end aborts the underlying connection instead of draining it.
+    * @param summary The summary of the S3 Object to download
+    * @return The content and metadata of this file
+    */
+   public S3ObjectContent getObjectContent(S3ObjectSummary summary){
+      return getObjectContent(summary, -1);
    }
 
    /**
-    * Download Amazon S3 file as byte array.
+    * Retrieve the first bytes of Amazon S3 file content along with its metadata using a
+    * single ranged GET request. Content is not buffered so caller is responsible for closing it.
     * @param summary The summary of the S3 Object to download
-    * @return This file bytes or null if something goes wrong.
+    * @param maxBytes The maximum number of bytes to retrieve, -1 for retrieving whole content
+    * @return The (partial) content and metadata of this file
     */
-   public byte[] getContent(S3ObjectSummary summary){
-      if (logger.isDebugEnabled()){
-         logger.debug("Downloading file content from {}", summary.getKey());
+   public S3ObjectContent getObjectContent(S3ObjectSummary summary, long maxBytes){
+      GetObjectRequest request = new GetObjectRequest(bucketName, summary.getKey());
+      if (maxBytes > 0 && summary.getSize() > maxBytes){
+         request.setRange(0, maxBytes - 1);
+         if (logger.isDebugEnabled()){
+            logger.debug("Streaming first {} bytes of file content from {}", maxBytes, summary.getKey());
+         }
+      } else if (logger.isDebugEnabled()){
+         logger.debug("Streaming file content from {}", summary.getKey());
       }
       // Retrieve object corresponding to key into bucket.
-      S3Object object = s3Client.getObject(bucketName, summary.getKey());
-      
-      InputStream is = null;
-      ByteArrayOutputStream bos = null;
+      S3Object object = getObject(request);
+      return new S3ObjectContent(summary.getKey(), new AbortOnCloseInputStream(object.getObjectContent()),
+            object.getObjectMetadata());
+   }
 
+   /**
+    * Download whole Amazon S3 file content into a local file. Parallel download is used
+    * for large files if enabled.
+    * @param summary The summary of the S3 Object to download
+    * @param target The file to write content to, truncated if it already exists
+    * @return The metadata of this file
+    * @throws IOException if target file cannot be written
+    */
+   public ObjectMetadata download(S3ObjectSummary summary, File target) throws IOException{
+      if (downloader != null && downloader.accept(summary)){
+         return downloader.download(summary, target);
+      }
+      if (logger.isDebugEnabled()){
+         logger.debug("Downloading file content from {} to {}", summary.getKey(), target);
+      }
+      S3Object object = getObject(new GetObjectRequest(bucketName, summary.getKey()));
+      InputStream is = new AbortOnCloseInputStream(object.getObjectContent());
+      OutputStream os = null;
       try{
-         // Get input stream on S3 Object.
-         is = object.getObjectContent();
-         bos = new ByteArrayOutputStream();
-
-         byte[] buffer = new byte[4096];
-         int len = is.read(buffer);
-         while (len > 0) {
-            bos.write(buffer, 0, len);
-            len = is.read(buffer);
+         os = new FileOutputStream(target);
+         byte[] buffer = new byte[64 * 1024];
+         int len;
+         while ((len = is.read(buffer)) != -1){
+            os.write(buffer, 0, len);
          }
-
-         // Flush and return result.
-         bos.flush();
-         return bos.toByteArray();
-      } catch (IOException e) {
-         e.printStackTrace();
-         return null;
       } finally {
-         if (bos != null){
-            try{
-               bos.close();
-            } catch (IOException e) {
-            }
-         }
-         try{
-            is.close();
-         } catch (IOException e) {
+         if (os != null){
+            os.close();
          }
+         is.close();
       }
+      return object.getObjectMetadata();
    }
-   
+
+   /** @return The number of requests issued to Amazon S3 by this connector */
+   public long getRequestCount(){
+      return requestCount.get();
+   }
+
+   /** @return The latency of listing requests issued by this connector */
+   public LatencyHistogram getListLatency(){
+      return listLatency;
+   }
+
+   /** @return The latency of GET requests issued by this connector, until response headers are received */
+   public LatencyHistogram getGetLatency(){
+      return getLatency;
+   }
+
+   private ObjectListing listObjects(ListObjectsRequest request){
+      requestCount.incrementAndGet();
+      long start = System.currentTimeMillis();
+      ObjectListing listing = s3Client.listObjects(request);
+      listLatency.record(System.currentTimeMillis() - start);
+      return listing;
+   }
+
+   private ObjectListing listNextBatchOfObjects(ObjectListing previous){
+      if (!previous.isTruncated()){
+         // Client does not issue any request when listing is complete.
+         return s3Client.listNextBatchOfObjects(previous);
+      }
+      requestCount.incrementAndGet();
+      long start = System.currentTimeMillis();
+      ObjectListing listing = s3Client.listNextBatchOfObjects(previous);
+      listLatency.record(System.currentTimeMillis() - start);
+      return listing;
+   }
+
+   private S3Object getObject(GetObjectRequest request){
+      requestCount.incrementAndGet();
+      long start = System.currentTimeMillis();
+      S3Object object = s3Client.getObject(request);
+      getLatency.record(System.currentTimeMillis() - start);
+      return object;
+   }
+
    /**
     * Get the download url of this S3 object. May return null if the
     * object bucket and key cannot be converted to a URL.
@@ -211,4 +574,75 @@ public class S3Connector{
       }
       return resourceUrl;
    }
+
+   /**
+    * Stream wrapper that aborts the S3 connection if closed before the end of content
+    * has been reached. Otherwise, the HTTP client would download the remaining bytes
+    * just to release the connection.
+    */
+   private static class AbortOnCloseInputStream extends FilterInputStream{
+
+      private boolean eof = false;
+
+      AbortOnCloseInputStream(S3ObjectInputStream in){
+         super(in);
+      }
+
+      @Override
+      public int read() throws IOException{
+         int result = super.read();
+         if (result == -1){
+            eof = true;
+         }
+         return result;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException{
+         int result = super.read(b, off, len);
+         if (result == -1){
+            eof = true;
+         }
+         return result;
+      }
+
+      @Override
+      public void close() throws IOException{
+         if (!eof && ((S3ObjectInputStream) in).getHttpRequest() != null){
+            ((S3ObjectInputStream) in).abort();
+         }
+         super.close();
+      }
+   }
+
+   /**
+    * A partition of the bucket to list : objects of a prefix (optionally not recursing
+    * into sub-prefixes thanks to a delimiter) after a marker key and up to a last key.
+    */
+   private static class ListingPartition{
+
+      private final String prefix;
+      private final String delimiter;
+      private final String marker;
+      private final String lastKey;
+
+      ListingPartition(String prefix, String delimiter, String marker, String lastKey){
+         this.prefix = prefix;
+         this.delimiter = delimiter;
+         this.marker = marker;
+         this.lastKey = lastKey;
+      }
+
+      /** @return An identifier of this partition, stable between scans of same configuration */
+      String getId(){
+         StringBuilder id = new StringBuilder(prefix == null ? "" : prefix);
+         if (delimiter != null){
+            id.append('|').append(delimiter);
+         }
+         if (marker != null){
+            id.append('>').append(marker);
+         }
+         return id.toString();
+      }
+   }
 }
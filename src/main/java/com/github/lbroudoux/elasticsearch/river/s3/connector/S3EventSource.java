@@ -0,0 +1,45 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.util.List;
+/**
+ * A source of Amazon S3 event notifications. Events are delivered at least once :
+ * an event that has not been acknowledged may be delivered again later.
+ * @author laurent
+ */
+public interface S3EventSource{
+
+   /**
+    * Wait for next events.
+    * @param waitMillis Maximum time to wait for events
+    * @return Next events, an empty list if none arrived within wait time
+    * @throws InterruptedException if interrupted while waiting
+    */
+   List<S3ObjectEvent> poll(long waitMillis) throws InterruptedException;
+
+   /**
+    * Acknowledge events that have been processed so that they're not delivered again.
+    * @param events The processed events
+    */
+   void acknowledge(List<S3ObjectEvent> events);
+
+   /** Release resources of this source. */
+   void close();
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.elasticsearch.common.joda.time.format.ISODateTimeFormat;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3KeyMatcher;
+/**
+ * A reader of Amazon S3 Inventory reports, giving the objects of a bucket without
+ * listing it. Latest report is found under inventory prefix (the one of inventory
+ * configuration, holding a folder per report date) and its gzipped CSV data files
+ * are streamed to listener as pages, just like listing does.
+ * @author laurent
+ */
+public class S3InventoryReader{
+
+   private static final ESLogger logger = Loggers.getLogger(S3InventoryReader.class);
+
+   /** Number of inventory rows per page given to listener. */
+   private static final int PAGE_SIZE = 1000;
+
+   private static final String MANIFEST = "manifest.json";
+
+   private final S3InventoryStorage storage;
+   private final String inventoryPrefix;
+
+
+   /**
+    * Create a new reader.
+    * @param storage The storage holding inventory reports
+    * @param inventoryPrefix The prefix of inventory configuration into storage
+    */
+   public S3InventoryReader(S3InventoryStorage storage, String inventoryPrefix){
+      this.storage = storage;
+      if (inventoryPrefix != null && inventoryPrefix.length() > 0 && !inventoryPrefix.endsWith("/")){
+         inventoryPrefix = inventoryPrefix + "/";
+      }
+      this.inventoryPrefix = inventoryPrefix == null ? "" : inventoryPrefix;
+   }
+
+   /**
+    * Stream summaries of objects found into latest inventory report of bucket to a listener,
+    * one page at a time. Pages carry the indexable keys and the summaries of objects that
+    * have modification date younger than lastScanTime.
+    * @param bucketName The bucket inventory has been made for
+    * @param pathPrefix Prefix for filtering objects, may be null
+    * @param lastScanTime Last modification date filter
+    * @param keyMatcher Includes and excludes rules filter
+    * @param listener The listener receiving pages
+    * @return The creation time of inventory report, that is the scan time to record
+    * @throws IOException if no valid inventory report can be read
+    * @throws InterruptedException if interrupted while reading or within listener
+    */
+   public long listObjectSummaries(String bucketName, String pathPrefix, Long lastScanTime, S3KeyMatcher keyMatcher,
+         S3ObjectSummariesListener listener) throws IOException, InterruptedException{
+      Manifest manifest = readLatestManifest();
+      if (manifest == null){
+         throw new IOException("No inventory report found under " + inventoryPrefix);
+      }
+      if (!bucketName.equals(manifest.sourceBucket)){
+         throw new IOException("Inventory report " + manifest.key + " is for bucket " + manifest.sourceBucket);
+      }
+      if (!"CSV".equals(manifest.fileFormat)){
+         throw new IOException("Inventory report " + manifest.key + " has unsupported format " + manifest.fileFormat);
+      }
+      if (!manifest.schema.contains("Key") || !manifest.schema.contains("Size") || !manifest.schema.contains("LastModifiedDate")){
+         // Sizes are needed for telling unchanged objects and choosing parallel downloads.
+         throw new IOException("Inventory report " + manifest.key + " must include Key, Size and LastModifiedDate fields, "
+               + "found " + manifest.schema);
+      }
+      if (logger.isDebugEnabled()){
+         logger.debug("Reading inventory report {} made of {} files", manifest.key, manifest.files.size());
+      }
+      long modifiedSince = lastScanTime == null ? 0L : lastScanTime;
+      for (String file : manifest.files){
+         readDataFile(manifest, file, pathPrefix, modifiedSince, keyMatcher, listener);
+      }
+      return manifest.creationTimestamp;
+   }
+
+   /** Read the manifest of latest report, dated folders being sorted chronologically. */
+   private Manifest readLatestManifest() throws IOException{
+      List<String> folders = storage.listFolders(inventoryPrefix);
+      Collections.sort(folders, Collections.reverseOrder());
+      for (String folder : folders){
+         String name = folder.substring(inventoryPrefix.length());
+         if (name.length() == 0 || !Character.isDigit(name.charAt(0))){
+            // Not a report folder (data, hive...).
+            continue;
+         }
+         InputStream is = storage.open(folder + MANIFEST);
+         if (is != null){
+            try{
+               return parseManifest(folder + MANIFEST, is);
+            } finally {
+               is.close();
+            }
+         }
+      }
+      return null;
+   }
+
+   @SuppressWarnings("unchecked")
+   static Manifest parseManifest(String key, InputStream is) throws IOException{
+      XContentParser parser = JsonXContent.jsonXContent.createParser(is);
+      Map<String, Object> map;
+      try{
+         map = parser.map();
+      } finally {
+         parser.close();
+      }
+      Manifest manifest = new Manifest();
+      manifest.key = key;
+      manifest.sourceBucket = (String) map.get("sourceBucket");
+      manifest.fileFormat = (String) map.get("fileFormat");
+      manifest.creationTimestamp = Long.parseLong(String.valueOf(map.get("creationTimestamp")));
+      manifest.schema = new ArrayList<String>();
+      for (String column : String.valueOf(map.get("fileSchema")).split(",")){
+         manifest.schema.add(column.trim());
+      }
+      manifest.files = new ArrayList<String>();
+      for (Object file : (List<Object>) map.get("files")){
+         manifest.files.add((String) ((Map<String, Object>) file).get("key"));
+      }
+      return manifest;
+   }
+
+   private void readDataFile(Manifest manifest, String file, String pathPrefix, long modifiedSince,
+         S3KeyMatcher keyMatcher, S3ObjectSummariesListener listener) throws IOException, InterruptedException{
+      int keyColumn = manifest.schema.indexOf("Key");
+      int sizeColumn = manifest.schema.indexOf("Size");
+      int lastModifiedColumn = manifest.schema.indexOf("LastModifiedDate");
+      int eTagColumn = manifest.schema.indexOf("ETag");
+      int isLatestColumn = manifest.schema.indexOf("IsLatest");
+      int isDeleteMarkerColumn = manifest.schema.indexOf("IsDeleteMarker");
+
+      InputStream is = storage.open(file);
+      if (is == null){
+         throw new IOException("Inventory file " + file + " does not exist");
+      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(is), "UTF-8"));
+      try{
+         // Pages are given per run of sorted keys, so that partition progress can rely on keys order.
+         int run = 0;
+         int rows = 0;
+         int listed = 0;
+         String previousKey = null;
+         List<String> keys = new ArrayList<String>();
+         List<S3ObjectSummary> picked = new ArrayList<S3ObjectSummary>();
+         String line;
+         while ((line = reader.readLine()) != null){
+            if (line.length() == 0){
+               continue;
+            }
+            List<String> row = parseCsvLine(line);
+            String key = URLDecoder.decode(row.get(keyColumn), "UTF-8");
+            if (previousKey != null && key.compareTo(previousKey) < 0){
+               listener.onPage(file + "#" + run, new S3ObjectSummaries(null, picked, keys, listed));
+               keys = new ArrayList<String>();
+               picked = new ArrayList<S3ObjectSummary>();
+               rows = 0;
+               listed = 0;
+               run++;
+            }
+            previousKey = key;
+            rows++;
+
+            boolean current = (isLatestColumn < 0 || !"false".equals(row.get(isLatestColumn)))
+                  && (isDeleteMarkerColumn < 0 || !"true".equals(row.get(isDeleteMarkerColumn)));
+            if (current && (pathPrefix == null || key.startsWith(pathPrefix))){
+               listed++;
+               if (keyMatcher.isIndexable(key)){
+                  keys.add(key);
+                  long lastModified = ISODateTimeFormat.dateTimeParser().parseMillis(row.get(lastModifiedColumn));
+                  if (lastModified > modifiedSince){
+                     S3ObjectSummary summary = new S3ObjectSummary();
+                     summary.setBucketName(manifest.sourceBucket);
+                     summary.setKey(key);
+                     summary.setLastModified(new Date(lastModified));
+                     if (row.get(sizeColumn).length() == 0){
+                        throw new IOException("Inventory file " + file + " has no size for " + key);
+                     }
+                     summary.setSize(Long.parseLong(row.get(sizeColumn)));
+                     if (eTagColumn >= 0){
+                        summary.setETag(row.get(eTagColumn));
+                     }
+                     picked.add(summary);
+                  }
+               }
+            }
+            if (rows == PAGE_SIZE){
+               listener.onPage(file + "#" + run, new S3ObjectSummaries(null, picked, keys, listed));
+               keys = new ArrayList<String>();
+               picked = new ArrayList<S3ObjectSummary>();
+               rows = 0;
+               listed = 0;
+            }
+         }
+         if (rows > 0){
+            listener.onPage(file + "#" + run, new S3ObjectSummaries(null, picked, keys, listed));
+         }
+      } finally {
+         reader.close();
+      }
+   }
+
+   /** Parse a line of inventory CSV, where every value is double quoted. */
+   static List<String> parseCsvLine(String line){
+      List<String> values = new ArrayList<String>();
+      StringBuilder value = new StringBuilder();
+      boolean quoted = false;
+      for (int i = 0; i < line.length(); i++){
+         char c = line.charAt(i);
+         if (quoted){
+            if (c == '"'){
+               if (i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                  value.append('"');
+                  i++;
+               } else {
+                  quoted = false;
+               }
+            } else {
+               value.append(c);
+            }
+         } else if (c == '"'){
+            quoted = true;
+         } else if (c == ','){
+            values.add(value.toString());
+            value.setLength(0);
+         } else {
+            value.append(c);
+         }
+      }
+      values.add(value.toString());
+      return values;
+   }
+
+   /** The fields of an inventory manifest used for reading its data files. */
+   static class Manifest{
+      String key;
+      String sourceBucket;
+      String fileFormat;
+      long creationTimestamp;
+      List<String> schema;
+      List<String> files;
+   }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+/**
+ * The storage holding Amazon S3 Inventory reports, usually the destination bucket of
+ * inventory configuration.
+ * @author laurent
+ */
+public interface S3InventoryStorage{
+
+   /**
+    * List the folders found just under a prefix.
+    * @param prefix The prefix of folders, ending with a slash
+    * @return The full names of sub folders, ending with a slash
+    */
+   List<String> listFolders(String prefix) throws IOException;
+
+   /**
+    * Open a file of storage.
+    * @param key The full name of file
+    * @return A stream on file content, or null if file does not exist
+    */
+   InputStream open(String key) throws IOException;
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * Downloader of large Amazon S3 objects, splitting them into byte ranges that are fetched
+ * concurrently into a local file provided by caller. Every range is requested with the ETag of object
+ * summary as a constraint, so that parts of different versions of an object are never mixed.
+ * @author laurent
+ */
+public class S3MultiRangeDownloader{
+
+   private static final ESLogger logger = Loggers.getLogger(S3MultiRangeDownloader.class);
+
+   private final AmazonS3Client s3Client;
+   private final String bucketName;
+   private final long partSize;
+   private final AtomicLong requestCount;
+   private final ExecutorService executor;
+
+
+   /**
+    * Create a new downloader.
+    * @param s3Client The client to use for querying S3
+    * @param bucketName Name of the bucket to download from
+    * @param partSize The size of ranges to download
+    * @param parallelism The maximum number of ranges downloaded concurrently
+    * @param requestCount Counter of requests issued to S3
+    */
+   public S3MultiRangeDownloader(AmazonS3Client s3Client, String bucketName, long partSize, int parallelism,
+         AtomicLong requestCount){
+      this.s3Client = s3Client;
+      this.bucketName = bucketName;
+      this.partSize = partSize;
+      this.requestCount = requestCount;
+      this.executor = Executors.newFixedThreadPool(parallelism, EsExecutors.daemonThreadFactory("s3_river_downloader"));
+   }
+
+   private S3MultiRangeDownloader(S3MultiRangeDownloader downloader, String bucketName){
+      this.s3Client = downloader.s3Client;
+      this.bucketName = bucketName;
+      this.partSize = downloader.partSize;
+      this.requestCount = downloader.requestCount;
+      this.executor = downloader.executor;
+   }
+
+   /**
+    * Create a downloader for another bucket, sharing threads and settings of this one.
+    * Closing this downloader also closes the created one.
+    * @param bucketName Name of the bucket to download from
+    * @return A downloader for this bucket
+    */
+   public S3MultiRangeDownloader forBucket(String bucketName){
+      return new S3MultiRangeDownloader(this, bucketName);
+   }
+
+   /**
+    * Tell if an object is large enough for being downloaded in many parts.
+    * @param summary The summary of S3 object
+    * @return true if object is made of more than one part
+    */
+   public boolean accept(S3ObjectSummary summary){
+      return summary.getSize() > partSize;
+   }
+
+   /**
+    * Download whole content of an object into a file.
+    * @param summary The summary of the S3 Object to download
+    * @param target The file to write content to, truncated if it already exists
+    * @return The metadata of this object
+    */
+   public ObjectMetadata download(final S3ObjectSummary summary, File target){
+      if (logger.isDebugEnabled()){
+         logger.debug("Downloading {} bytes of {} using parts of {} bytes", summary.getSize(), summary.getKey(), partSize);
+      }
+      RandomAccessFile file = null;
+      try{
+         file = new RandomAccessFile(target, "rw");
+         file.setLength(summary.getSize());
+         final FileChannel channel = file.getChannel();
+         List<Future<ObjectMetadata>> futures = new ArrayList<Future<ObjectMetadata>>();
+         for (long start = 0; start < summary.getSize(); start += partSize){
+            final long partStart = start;
+            final long partEnd = Math.min(start + partSize, summary.getSize()) - 1;
+            futures.add(executor.submit(new Callable<ObjectMetadata>() {
+               @Override
+               public ObjectMetadata call() throws Exception {
+                  return downloadPart(summary, partStart, partEnd, channel);
+               }
+            }));
+         }
+         ObjectMetadata metadata = null;
+         try{
+            for (Future<ObjectMetadata> future : futures){
+               ObjectMetadata partMetadata = future.get();
+               if (metadata == null){
+                  metadata = partMetadata;
+               }
+            }
+         } catch (ExecutionException ee){
+            if (ee.getCause() instanceof AmazonClientException){
+               throw (AmazonClientException) ee.getCause();
+            }
+            throw new AmazonClientException("Error while downloading " + summary.getKey(), ee.getCause());
+         } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while downloading " + summary.getKey(), ie);
+         } finally {
+            for (Future<ObjectMetadata> future : futures){
+               future.cancel(true);
+            }
+         }
+         metadata.setContentLength(summary.getSize());
+         return metadata;
+      } catch (IOException ioe){
+         throw new AmazonClientException("Error while writing downloaded content of " + summary.getKey(), ioe);
+      } finally {
+         if (file != null){
+            try{
+               file.close();
+            } catch (IOException ioe){
+            }
+         }
+      }
+   }
+
+   /** Stop downloader threads. */
+   public void close(){
+      executor.shutdownNow();
+   }
+
+   /** Download a range of object content, writing it at the same position of channel. */
+   private ObjectMetadata downloadPart(S3ObjectSummary summary, long start, long end, FileChannel channel) throws IOException{
+      GetObjectRequest request = new GetObjectRequest(bucketName, summary.getKey());
+      request.setRange(start, end);
+      if (summary.getETag() != null){
+         request.setMatchingETagConstraints(Collections.singletonList(summary.getETag()));
+      }
+      requestCount.incrementAndGet();
+      S3Object object = s3Client.getObject(request);
+      if (object == null){
+         // ETag constraint not met.
+         throw new AmazonClientException("Object " + summary.getKey() + " has changed while being downloaded");
+      }
+      InputStream is = object.getObjectContent();
+      try{
+         byte[] buffer = new byte[64 * 1024];
+         long position = start;
+         int len;
+         while ((len = is.read(buffer)) != -1){
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, len);
+            while (bytes.hasRemaining()){
+               position += channel.write(bytes, position);
+            }
+            if (position > end + 1){
+               throw new IOException("Received more bytes than requested for part " + start + "-" + end);
+            }
+         }
+         if (position != end + 1){
+            throw new IOException("Received " + (position - start) + " bytes instead of " + (end - start + 1));
+         }
+      } finally {
+         is.close();
+      }
+      return object.getObjectMetadata();
+   }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+/**
+ * This is a simple wrapper for carrying the content of a S3 bucket object along
+ * with its metadata, both being retrieved with a single GET request. Content is
+ * not buffered so caller is responsible for closing it once done.
+ * @author laurent
+ */
+public class S3ObjectContent implements Closeable{
+
+   private final String key;
+   private final InputStream content;
+   private final ObjectMetadata metadata;
+
+
+   public S3ObjectContent(String key, InputStream content, ObjectMetadata metadata){
+      this.key = key;
+      this.content = content;
+      this.metadata = metadata;
+   }
+
+   public String getKey(){
+      return key;
+   }
+
+   public InputStream getContent(){
+      return content;
+   }
+
+   public ObjectMetadata getMetadata(){
+      return metadata;
+   }
+
+   /** @return The user metadata (x-amz-meta-* headers) of S3 object */
+   public Map<String, Object> getUserMetadata(){
+      return Collections.<String, Object>unmodifiableMap(metadata.getUserMetadata());
+   }
+
+   /** @return The Content-Type of S3 object, may be null */
+   public String getContentType(){
+      return metadata.getContentType();
+   }
+
+   @Override
+   public void close() throws IOException{
+      content.close();
+   }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.util.Date;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * This is a simple wrapper for carrying a creation or removal event of a S3 bucket
+ * object, as sent by Amazon S3 event notifications.
+ * @author laurent
+ */
+public class S3ObjectEvent{
+
+   /** The kind of change notified by an event. */
+   public enum Type{
+      CREATED, REMOVED
+   }
+
+   private final Type type;
+   private final String bucketName;
+   private final String key;
+   private final long size;
+   private final String eTag;
+   private final Date eventTime;
+   private final String sequencer;
+   private final String receipt;
+
+
+   /**
+    * Create a new event.
+    * @param type The kind of change
+    * @param bucketName The bucket of changed object
+    * @param key The key of changed object
+    * @param size The size of created object (0 for removals)
+    * @param eTag The ETag of created object (null for removals)
+    * @param eventTime The time of change
+    * @param sequencer The value ordering events of a same key, may be null
+    * @param receipt The opaque receipt used by event source for acknowledging event
+    */
+   public S3ObjectEvent(Type type, String bucketName, String key, long size, String eTag, Date eventTime,
+         String sequencer, String receipt){
+      this.type = type;
+      this.bucketName = bucketName;
+      this.key = key;
+      this.size = size;
+      this.eTag = eTag;
+      this.eventTime = eventTime;
+      this.sequencer = sequencer;
+      this.receipt = receipt;
+   }
+
+   public Type getType(){
+      return type;
+   }
+
+   public String getBucketName(){
+      return bucketName;
+   }
+
+   public String getKey(){
+      return key;
+   }
+
+   public long getSize(){
+      return size;
+   }
+
+   public String getETag(){
+      return eTag;
+   }
+
+   public Date getEventTime(){
+      return eventTime;
+   }
+
+   public String getSequencer(){
+      return sequencer;
+   }
+
+   public String getReceipt(){
+      return receipt;
+   }
+
+   /**
+    * Tell if this event happened after another event of the same key. Sequencers are
+    * hexadecimal values that are only comparable once padded to the same length.
+    * @param other Another event of the same key
+    * @return true if this event happened after the other one
+    */
+   public boolean isAfter(S3ObjectEvent other){
+      if (sequencer != null && other.sequencer != null){
+         int length = Math.max(sequencer.length(), other.sequencer.length());
+         return padRight(sequencer, length).compareTo(padRight(other.sequencer, length)) > 0;
+      }
+      if (eventTime != null && other.eventTime != null){
+         return !eventTime.before(other.eventTime);
+      }
+      return true;
+   }
+
+   /** @return A summary of created object, suitable for indexing it */
+   public S3ObjectSummary toSummary(){
+      S3ObjectSummary summary = new S3ObjectSummary();
+      summary.setBucketName(bucketName);
+      summary.setKey(key);
+      summary.setSize(size);
+      summary.setETag(eTag);
+      summary.setLastModified(eventTime);
+      return summary;
+   }
+
+   private static String padRight(String value, int length){
+      StringBuilder builder = new StringBuilder(value);
+      while (builder.length() < length){
+         builder.append('0');
+      }
+      return builder.toString();
+   }
+
+   @Override
+   public String toString(){
+      return type + " " + bucketName + "/" + key;
+   }
+}
@@ -24,8 +24,9 @@ import java.util.List;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 /**
  * This is a simple wrapper for carrying picked up summaries of S3 bucket objects
- * that mastches the last modification date criteria along with the keys of any objects
- * regardless their modification date.
+ * that mastches the last modification date criteria along with the keys of any indexable
+ * objects regardless their modification date. It may wrap either a whole bucket listing
+ * or a single listing page (in that later case, lastScanTime is null).
  * @author laurent
  */
 public class S3ObjectSummaries implements Serializable{
@@ -37,12 +38,18 @@ public class S3ObjectSummaries implements Serializable{
    
    private List<String> keys;
    private List<S3ObjectSummary> pickedSummaries;
+   private int listedCount;
 
    
    public S3ObjectSummaries(Long lastScanTime, List<S3ObjectSummary> summaries, List<String> keys){
+      this(lastScanTime, summaries, keys, keys.size());
+   }
+
+   public S3ObjectSummaries(Long lastScanTime, List<S3ObjectSummary> summaries, List<String> keys, int listedCount){
       this.lastScanTime = lastScanTime;
       this.pickedSummaries = summaries;
       this.keys = keys;
+      this.listedCount = listedCount;
    }
    
    public Long getLastScanTime(){
@@ -56,4 +63,9 @@ public class S3ObjectSummaries implements Serializable{
    public List<S3ObjectSummary> getPickedSummaries(){
       return pickedSummaries;
    }
+
+   /** @return The number of listed objects, including those that are not indexable */
+   public int getListedCount(){
+      return listedCount;
+   }
 }
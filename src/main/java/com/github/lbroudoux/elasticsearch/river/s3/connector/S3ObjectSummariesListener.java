@@ -0,0 +1,34 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+/**
+ * Listener of bucket objects listing, receiving summaries one listing page at a time.
+ * @author laurent
+ */
+public interface S3ObjectSummariesListener{
+
+   /**
+    * Called for each listing page. Implementations may block for applying backpressure
+    * on listing and should be thread safe if listing concurrency is enabled.
+    * @param partition Identifier of the bucket partition this page belongs to
+    * @param page The indexable keys and picked summaries of this page
+    * @throws InterruptedException if interrupted while processing page
+    */
+   void onPage(String partition, S3ObjectSummaries page) throws InterruptedException;
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.common.joda.time.format.ISODateTimeFormat;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+/**
+ * An event source reading Amazon S3 event notifications from an Amazon SQS queue, the
+ * bucket publishing its notifications either directly to the queue or through a SNS topic.
+ * Messages are deleted from queue once acknowledged.
+ * @author laurent
+ */
+public class SqsS3EventSource implements S3EventSource{
+
+   private static final ESLogger logger = Loggers.getLogger(SqsS3EventSource.class);
+
+   /** Maximum number of messages SQS allows per receive or delete batch. */
+   private static final int MAX_MESSAGES = 10;
+
+   /** Maximum long polling wait time SQS allows, in seconds. */
+   private static final int MAX_WAIT_SECONDS = 20;
+
+   private final AmazonSQSClient sqsClient;
+   private final String queueUrl;
+
+
+   /**
+    * Create a new source on queue.
+    * @param sqsClient The client to use for querying SQS
+    * @param queueUrl The url of queue receiving notifications
+    */
+   public SqsS3EventSource(AmazonSQSClient sqsClient, String queueUrl){
+      this.sqsClient = sqsClient;
+      this.queueUrl = queueUrl;
+      // Queue url holds the regional endpoint to use.
+      URI queueUri = URI.create(queueUrl);
+      this.sqsClient.setEndpoint(queueUri.getScheme() + "://" + queueUri.getHost());
+   }
+
+   @Override
+   public List<S3ObjectEvent> poll(long waitMillis) throws InterruptedException{
+      if (Thread.interrupted()){
+         throw new InterruptedException();
+      }
+      ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+            .withMaxNumberOfMessages(MAX_MESSAGES)
+            .withWaitTimeSeconds((int) Math.min(MAX_WAIT_SECONDS, waitMillis / 1000));
+      List<S3ObjectEvent> events = new ArrayList<S3ObjectEvent>();
+      List<String> emptyReceipts = new ArrayList<String>();
+      for (Message message : sqsClient.receiveMessage(request).getMessages()){
+         List<S3ObjectEvent> messageEvents = parseMessage(message.getBody(), message.getReceiptHandle());
+         if (messageEvents.isEmpty()){
+            // Test events or unsupported notifications : nothing to process.
+            emptyReceipts.add(message.getReceiptHandle());
+         }
+         events.addAll(messageEvents);
+      }
+      deleteMessages(emptyReceipts);
+      return events;
+   }
+
+   @Override
+   public void acknowledge(List<S3ObjectEvent> events){
+      // A message may hold many events, delete it only once.
+      Set<String> receipts = new LinkedHashSet<String>();
+      for (S3ObjectEvent event : events){
+         receipts.add(event.getReceipt());
+      }
+      deleteMessages(new ArrayList<String>(receipts));
+   }
+
+   @Override
+   public void close(){
+      sqsClient.shutdown();
+   }
+
+   private void deleteMessages(List<String> receipts){
+      for (int i = 0; i < receipts.size(); i += MAX_MESSAGES){
+         List<DeleteMessageBatchRequestEntry> entries = new ArrayList<DeleteMessageBatchRequestEntry>();
+         for (int j = i; j < Math.min(i + MAX_MESSAGES, receipts.size()); j++){
+            entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(j), receipts.get(j)));
+         }
+         sqsClient.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, entries));
+      }
+   }
+
+   /**
+    * Parse the body of a SQS message holding an Amazon S3 event notification, either
+    * directly or wrapped into a SNS notification.
+    * @param body The message body
+    * @param receipt The receipt of message
+    * @return The object creation and removal events of notification
+    */
+   @SuppressWarnings("unchecked")
+   public static List<S3ObjectEvent> parseMessage(String body, String receipt){
+      List<S3ObjectEvent> events = new ArrayList<S3ObjectEvent>();
+      Map<String, Object> notification;
+      try{
+         notification = JsonXContent.jsonXContent.createParser(body).mapAndClose();
+         if (notification.get("Records") == null && notification.get("Message") instanceof String){
+            // Notification published through a SNS topic.
+            notification = JsonXContent.jsonXContent.createParser((String) notification.get("Message")).mapAndClose();
+         }
+      } catch (Exception e){
+         logger.warn("Ignoring message that is not a S3 event notification: {}", body);
+         return events;
+      }
+      if (!(notification.get("Records") instanceof List)){
+         return events;
+      }
+      for (Object record : (List<Object>) notification.get("Records")){
+         try{
+            S3ObjectEvent event = parseRecord((Map<String, Object>) record, receipt);
+            if (event != null){
+               events.add(event);
+            }
+         } catch (Exception e){
+            logger.warn("Ignoring malformed S3 event record {}", record);
+         }
+      }
+      return events;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static S3ObjectEvent parseRecord(Map<String, Object> record, String receipt) throws UnsupportedEncodingException{
+      String eventName = (String) record.get("eventName");
+      S3ObjectEvent.Type type;
+      if (eventName == null){
+         return null;
+      } else if (eventName.startsWith("ObjectCreated:")){
+         type = S3ObjectEvent.Type.CREATED;
+      } else if (eventName.startsWith("ObjectRemoved:")){
+         type = S3ObjectEvent.Type.REMOVED;
+      } else {
+         return null;
+      }
+      Map<String, Object> s3 = (Map<String, Object>) record.get("s3");
+      Map<String, Object> bucket = (Map<String, Object>) s3.get("bucket");
+      Map<String, Object> object = (Map<String, Object>) s3.get("object");
+      // Keys are url encoded into notifications.
+      String key = URLDecoder.decode((String) object.get("key"), "UTF-8");
+      long size = object.get("size") instanceof Number ? ((Number) object.get("size")).longValue() : 0L;
+      Date eventTime = null;
+      if (record.get("eventTime") != null){
+         eventTime = ISODateTimeFormat.dateTimeParser().parseDateTime((String) record.get("eventTime")).toDate();
+      }
+      return new S3ObjectEvent(type, (String) bucket.get("name"), key, size, (String) object.get("eTag"),
+            eventTime, (String) object.get("sequencer"), receipt);
+   }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+/**
+ * Executor running extractions in dedicated threads under a wall-clock timeout, so that
+ * a parser spinning on a malformed file never blocks its caller for longer than that.
+ * A timed out extraction is interrupted and its stream closed, but a parser looping on
+ * CPU may ignore both : its thread is then abandoned and counted until it ends. New
+ * extractions are refused while too many abandoned threads are still running, so that
+ * runaway parsers cannot pile up.
+ * @author laurent
+ */
+public class ExtractionExecutor{
+
+   private final ExecutorService executor;
+
+   private final long timeoutMillis;
+
+   private final int maxAbandoned;
+
+   private final AtomicInteger abandoned = new AtomicInteger();
+
+   private final AtomicLong refused = new AtomicLong();
+
+
+   /**
+    * Create a new executor.
+    * @param timeoutMillis Maximum time allowed for extracting a file
+    * @param maxAbandoned Number of abandoned extractions still running above which new ones are refused
+    * @param threadFactory Factory used for creating extraction threads
+    */
+   public ExtractionExecutor(long timeoutMillis, int maxAbandoned, ThreadFactory threadFactory){
+      this.timeoutMillis = timeoutMillis;
+      this.maxAbandoned = maxAbandoned;
+      this.executor = Executors.newCachedThreadPool(threadFactory);
+   }
+
+   /**
+    * Extract text content of a file using extractor, waiting at most for the configured timeout.
+    * @param extractor The extractor to use
+    * @param stream The stream on file content, closed once extraction is done
+    * @param metadata The metadata of file, completed with extracted ones
+    * @param maxLength The maximum number of characters to extract
+    * @return The extracted text
+    * @throws IOException if stream cannot be read, if interrupted while waiting or if too many
+    *    abandoned extractions are still running
+    * @throws TikaException if content cannot be parsed
+    * @throws ExtractionLimitException if extraction times out
+    */
+   public String extract(final ContentExtractor extractor, final InputStream stream, final Metadata metadata,
+         final int maxLength) throws IOException, TikaException{
+      if (abandoned.get() >= maxAbandoned){
+         // Not a failure of this file : it should be tried again later.
+         refused.incrementAndGet();
+         stream.close();
+         throw new IOException(abandoned.get() + " runaway extractions are still running, refusing new ones");
+      }
+      Extraction extraction = new Extraction(extractor, stream, metadata, maxLength);
+      Future<String> future;
+      try{
+         future = executor.submit(extraction);
+      } catch (RejectedExecutionException ree){
+         throw new IOException("Extraction executor has been shut down");
+      }
+      try{
+         return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException te){
+         extraction.abandon(future);
+         throw new ExtractionLimitException("Extraction did not complete within " + timeoutMillis + " ms");
+      } catch (InterruptedException ie){
+         extraction.abandon(future);
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting for extraction");
+      } catch (ExecutionException ee){
+         Throwable cause = ee.getCause();
+         if (cause instanceof IOException){
+            throw (IOException) cause;
+         }
+         if (cause instanceof TikaException){
+            throw (TikaException) cause;
+         }
+         if (cause instanceof RuntimeException){
+            throw (RuntimeException) cause;
+         }
+         if (cause instanceof Error){
+            throw (Error) cause;
+         }
+         throw new TikaException("Unexpected extraction failure", cause);
+      }
+   }
+
+   /** @return The number of timed out extractions whose thread is still running */
+   public int getAbandonedCount(){
+      return abandoned.get();
+   }
+
+   /** @return The number of extractions refused because of runaway ones */
+   public long getRefusedCount(){
+      return refused.get();
+   }
+
+   /** Stop accepting extractions and interrupt running ones. */
+   public void shutdown(){
+      executor.shutdownNow();
+   }
+
+   /** An extraction task, knowing whether its caller gave up waiting for it. */
+   private class Extraction implements Callable<String>{
+
+      private final ContentExtractor extractor;
+      private final InputStream stream;
+      private final Metadata metadata;
+      private final int maxLength;
+
+      private boolean started = false;
+      private boolean done = false;
+      private boolean abandonedByCaller = false;
+
+      Extraction(ContentExtractor extractor, InputStream stream, Metadata metadata, int maxLength){
+         this.extractor = extractor;
+         this.stream = stream;
+         this.metadata = metadata;
+         this.maxLength = maxLength;
+      }
+
+      @Override
+      public String call() throws Exception{
+         synchronized (this){
+            if (abandonedByCaller){
+               throw new InterruptedException("Extraction abandoned before starting");
+            }
+            started = true;
+         }
+         try{
+            return extractor.extract(stream, metadata, maxLength);
+         } finally {
+            synchronized (this){
+               done = true;
+               if (abandonedByCaller){
+                  abandoned.decrementAndGet();
+               }
+            }
+         }
+      }
+
+      /** Give up extraction : interrupt it and close its stream so that a blocked read fails. */
+      void abandon(Future<String> future){
+         synchronized (this){
+            abandonedByCaller = true;
+            if (started && !done){
+               abandoned.incrementAndGet();
+            }
+         }
+         future.cancel(true);
+         try{
+            stream.close();
+         } catch (IOException ioe){
+            // Stream is being given up anyway.
+         }
+      }
+   }
+}
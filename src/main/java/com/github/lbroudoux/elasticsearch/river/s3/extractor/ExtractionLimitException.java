@@ -0,0 +1,38 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import org.apache.tika.exception.TikaException;
+/**
+ * Raised when extraction of a file exceeds the time allowed for it. Such files
+ * are very likely to exceed it again, they should not be retried as long as they don't change.
+ * @author laurent
+ */
+public class ExtractionLimitException extends TikaException{
+
+   private static final long serialVersionUID = 1L;
+
+   public ExtractionLimitException(String message){
+      super(message);
+   }
+
+   public ExtractionLimitException(String message, Throwable cause){
+      super(message, cause);
+   }
+}
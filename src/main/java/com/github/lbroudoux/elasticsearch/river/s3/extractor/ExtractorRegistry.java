@@ -0,0 +1,113 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+/**
+ * Registry of content extractors by content type and file extension. Content type of
+ * file takes precedence over its extension, unless it's a generic binary type as often
+ * found on S3 objects. Files matching no registered extractor go through Tika format
+ * detection and parsing.
+ * @author laurent
+ */
+public class ExtractorRegistry{
+
+   private final Map<String, ContentExtractor> byContentType = new HashMap<String, ContentExtractor>();
+   private final Map<String, ContentExtractor> byExtension = new HashMap<String, ContentExtractor>();
+   private final ContentExtractor defaultExtractor;
+
+
+   /**
+    * Create an empty registry.
+    * @param defaultExtractor The extractor of files matching no registered extractor
+    */
+   public ExtractorRegistry(ContentExtractor defaultExtractor){
+      this.defaultExtractor = defaultExtractor;
+   }
+
+   /** @return A registry with fast extractors for plain text and HTML files, using Tika for others */
+   public static ExtractorRegistry defaultRegistry(){
+      ExtractorRegistry registry = new ExtractorRegistry(new TikaExtractor());
+      PlainTextExtractor plainText = new PlainTextExtractor();
+      registry.registerContentTypes(plainText, "text/plain", "text/csv", "text/tab-separated-values", "application/json");
+      registry.registerExtensions(plainText, "txt", "text", "log", "csv", "tsv", "json", "md");
+      HtmlExtractor html = new HtmlExtractor();
+      registry.registerContentTypes(html, "text/html", "application/xhtml+xml");
+      registry.registerExtensions(html, "html", "htm");
+      return registry;
+   }
+
+   /**
+    * Register an extractor for content types.
+    * @param extractor The extractor
+    * @param contentTypes Content types without parameters, such as text/plain
+    */
+   public void registerContentTypes(ContentExtractor extractor, String... contentTypes){
+      for (String contentType : contentTypes){
+         byContentType.put(contentType.toLowerCase(Locale.ROOT), extractor);
+      }
+   }
+
+   /**
+    * Register an extractor for file extensions.
+    * @param extractor The extractor
+    * @param extensions Extensions without dot, such as txt
+    */
+   public void registerExtensions(ContentExtractor extractor, String... extensions){
+      for (String extension : extensions){
+         byExtension.put(extension.toLowerCase(Locale.ROOT), extractor);
+      }
+   }
+
+   /**
+    * Get the extractor of a file.
+    * @param contentType The content type of file, may be null
+    * @param key The key or name of file
+    * @return The extractor to use
+    */
+   public ContentExtractor get(String contentType, String key){
+      if (contentType != null){
+         int semicolon = contentType.indexOf(';');
+         String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+         ContentExtractor extractor = byContentType.get(mediaType);
+         if (extractor != null){
+            return extractor;
+         }
+         if (!isGeneric(mediaType)){
+            // A specific content type we've no fast path for.
+            return defaultExtractor;
+         }
+      }
+      int dot = key.lastIndexOf('.');
+      if (dot >= 0 && dot > key.lastIndexOf('/')){
+         ContentExtractor extractor = byExtension.get(key.substring(dot + 1).toLowerCase(Locale.ROOT));
+         if (extractor != null){
+            return extractor;
+         }
+      }
+      return defaultExtractor;
+   }
+
+   private static boolean isGeneric(String mediaType){
+      return mediaType.length() == 0 || "application/octet-stream".equals(mediaType)
+            || "binary/octet-stream".equals(mediaType);
+   }
+}
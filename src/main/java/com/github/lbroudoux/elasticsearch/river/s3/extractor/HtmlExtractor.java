@@ -0,0 +1,53 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlParser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.xml.sax.SAXException;
+/**
+ * Extractor of HTML files, using Tika HTML parser directly without detecting format.
+ * @author laurent
+ */
+public class HtmlExtractor implements ContentExtractor{
+
+   private final HtmlParser parser = new HtmlParser();
+
+   @Override
+   public String extract(InputStream stream, Metadata metadata, int maxLength) throws IOException, TikaException{
+      WriteOutContentHandler handler = new WriteOutContentHandler(maxLength);
+      try{
+         parser.parse(stream, new BodyContentHandler(handler), metadata, new ParseContext());
+      } catch (SAXException e){
+         if (!handler.isWriteLimitReached(e)){
+            throw new TikaException("Unexpected SAX processing failure", e);
+         }
+      } finally {
+         stream.close();
+      }
+      return handler.toString();
+   }
+}
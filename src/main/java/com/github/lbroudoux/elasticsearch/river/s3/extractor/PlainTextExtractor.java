@@ -0,0 +1,53 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.tika.detect.AutoDetectReader;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+/**
+ * Extractor of plain text files (text, CSV, logs, JSON...), only detecting their charset
+ * before decoding them. There's no format detection nor parser involved.
+ * @author laurent
+ */
+public class PlainTextExtractor implements ContentExtractor{
+
+   @Override
+   public String extract(InputStream stream, Metadata metadata, int maxLength) throws IOException, TikaException{
+      try{
+         AutoDetectReader reader = new AutoDetectReader(stream, metadata);
+         StringBuilder text = new StringBuilder(Math.min(maxLength, 8192));
+         char[] buffer = new char[8192];
+         int len;
+         while (text.length() < maxLength && (len = reader.read(buffer, 0, Math.min(buffer.length, maxLength - text.length()))) != -1){
+            text.append(buffer, 0, len);
+         }
+         metadata.set(Metadata.CONTENT_ENCODING, reader.getCharset().name());
+         if (metadata.get(Metadata.CONTENT_TYPE) == null){
+            metadata.set(Metadata.CONTENT_TYPE, "text/plain; charset=" + reader.getCharset().name());
+         }
+         return text.toString();
+      } finally {
+         stream.close();
+      }
+   }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+
+import com.github.lbroudoux.elasticsearch.river.s3.river.TikaHolder;
+/**
+ * Extractor detecting the format of file and parsing it using the matching Tika parser.
+ * @author laurent
+ */
+public class TikaExtractor implements ContentExtractor{
+
+   @Override
+   public String extract(InputStream stream, Metadata metadata, int maxLength) throws IOException, TikaException{
+      return TikaHolder.tika().parseToString(stream, metadata, maxLength);
+   }
+}
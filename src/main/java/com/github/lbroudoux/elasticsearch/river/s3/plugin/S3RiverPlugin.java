@@ -18,6 +18,9 @@
  */
 package com.github.lbroudoux.elasticsearch.river.s3.plugin;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
 import org.elasticsearch.common.inject.Module;
 import org.elasticsearch.plugins.AbstractPlugin;
 import org.elasticsearch.rest.RestModule;
@@ -25,6 +28,7 @@ import org.elasticsearch.river.RiversModule;
 
 import com.github.lbroudoux.elasticsearch.river.s3.rest.S3ManageAction;
 import com.github.lbroudoux.elasticsearch.river.s3.river.S3RiverModule;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3RiverRegistryModule;
 /**
  * Amazon S3 River plugin definition.
  * @author laurent
@@ -41,6 +45,13 @@ public class S3RiverPlugin extends AbstractPlugin{
       return "River Amazon S3 Plugin";
    }
 
+   @Override
+   public Collection<Class<? extends Module>> modules(){
+      Collection<Class<? extends Module>> modules = new ArrayList<Class<? extends Module>>();
+      modules.add(S3RiverRegistryModule.class);
+      return modules;
+   }
+
    @Override
    public void processModule(Module module){
       if (module instanceof RiversModule){
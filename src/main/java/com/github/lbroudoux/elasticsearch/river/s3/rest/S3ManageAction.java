@@ -34,9 +34,13 @@ import org.elasticsearch.rest.RestStatus;
 
 import org.elasticsearch.rest.RestRequest.Method;
 
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3River;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3RiverRegistry;
+
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 /**
- * REST actions definition for starting and stopping an Amazon S3 river.
+ * REST actions definition for starting and stopping an Amazon S3 river, and for
+ * triggering a scan or getting statistics of a river running on the node receiving request.
  * @author laurent
  */
 public class S3ManageAction extends BaseRestHandler{
@@ -45,10 +49,17 @@ public class S3ManageAction extends BaseRestHandler{
    public static final String START_COMMAND = "_start";
    /** The constant for 'stop river' command. */
    public static final String STOP_COMMAND = "_stop";
+   /** The constant for 'river statistics' command. */
+   public static final String STATS_COMMAND = "_stats";
+   /** The constant for 'scan bucket now' command. */
+   public static final String SCAN_NOW_COMMAND = "_scan_now";
+
+   private final S3RiverRegistry registry;
    
    @Inject
-   public S3ManageAction(Settings settings, Client client, RestController controller){
+   public S3ManageAction(Settings settings, Client client, RestController controller, S3RiverRegistry registry){
       super(settings, controller, client);
+      this.registry = registry;
 
       // Define S3 REST endpoints.
       controller.registerHandler(Method.GET, "/_s3/{rivername}/{command}", this);
@@ -62,6 +73,15 @@ public class S3ManageAction extends BaseRestHandler{
       
       String rivername = request.param("rivername");
       String command = request.param("command");
+
+      if (STATS_COMMAND.equals(command)){
+         sendStats(rivername, channel);
+         return;
+      }
+      if (SCAN_NOW_COMMAND.equals(command)){
+         scanNow(rivername, channel);
+         return;
+      }
       
       String status = null;
       if (START_COMMAND.equals(command)){
@@ -80,6 +100,12 @@ public class S3ManageAction extends BaseRestHandler{
                   .endObject()
                .endObject();
             client.prepareIndex("_river", rivername, "_s3status").setSource(xb).execute().actionGet();
+
+            // Status is persisted, river takes it into account at once if it runs on this node.
+            S3River river = registry.get(rivername);
+            if (river != null){
+               river.setStarted(START_COMMAND.equals(command));
+            }
          }
          
          XContentBuilder builder = jsonBuilder();
@@ -93,6 +119,45 @@ public class S3ManageAction extends BaseRestHandler{
       }
    }
    
+   /** Send statistics of river if it runs on this node. */
+   private void sendStats(String rivername, RestChannel channel) throws Exception{
+      S3River river = registry.get(rivername);
+      if (river == null){
+         sendNotRunningHere(rivername, channel);
+         return;
+      }
+      XContentBuilder builder = jsonBuilder().startObject();
+      builder.field("feedname", rivername);
+      river.statsToXContent(builder);
+      builder.endObject();
+      channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+   }
+   
+   /** Trigger a scan of river if it runs on this node. */
+   private void scanNow(String rivername, RestChannel channel) throws Exception{
+      S3River river = registry.get(rivername);
+      if (river == null){
+         sendNotRunningHere(rivername, channel);
+         return;
+      }
+      river.scanNow();
+      XContentBuilder builder = jsonBuilder()
+         .startObject()
+            .field(new XContentBuilderString("ok"), true)
+         .endObject();
+      channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+   }
+
+   /** Answer that river does not run on this node. */
+   private void sendNotRunningHere(String rivername, RestChannel channel) throws IOException{
+      XContentBuilder builder = jsonBuilder()
+         .startObject()
+            .field("feedname", rivername)
+            .field("error", "River is not running on this node")
+         .endObject();
+      channel.sendResponse(new BytesRestResponse(RestStatus.NOT_FOUND, builder));
+   }
+
    /** */
    private void onFailure(RestRequest request, RestChannel channel, Exception e) throws Exception{
       try{
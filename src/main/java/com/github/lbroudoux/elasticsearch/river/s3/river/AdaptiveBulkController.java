@@ -0,0 +1,127 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import org.elasticsearch.common.unit.TimeValue;
+/**
+ * Controller adapting the number of actions per bulk and the download concurrency
+ * to the cluster load. It follows an additive increase / multiplicative decrease
+ * scheme : a rejected or slow bulk halves bulk size and removes a worker, while a
+ * series of fast bulks grows them back step by step, up to configured values.
+ * @author laurent
+ */
+public class AdaptiveBulkController{
+
+   /** Bulks taking more than this are considered as a sign of cluster pressure. */
+   public static final TimeValue DEFAULT_SLOW_BULK = TimeValue.timeValueSeconds(2);
+
+   /** Bulks taking less than this are considered as a sign of available capacity. */
+   public static final TimeValue DEFAULT_FAST_BULK = TimeValue.timeValueMillis(500);
+
+   /** Number of consecutive fast bulks before growing. */
+   private static final int FAST_BULKS_BEFORE_GROWING = 5;
+
+   /** Minimum number of actions per bulk. */
+   private static final int MIN_BULK_ACTIONS = 5;
+
+   private final int maxBulkActions;
+   private final int maxConcurrency;
+   private final long slowBulkMillis;
+   private final long fastBulkMillis;
+
+   private int bulkActions;
+   private int concurrency;
+   private int fastBulks = 0;
+
+
+   /**
+    * Create a controller starting at configured values, which are also the upper bounds.
+    * @param maxBulkActions The configured number of actions per bulk
+    * @param maxConcurrency The configured download concurrency
+    */
+   public AdaptiveBulkController(int maxBulkActions, int maxConcurrency){
+      this(maxBulkActions, maxConcurrency, DEFAULT_SLOW_BULK, DEFAULT_FAST_BULK);
+   }
+
+   public AdaptiveBulkController(int maxBulkActions, int maxConcurrency, TimeValue slowBulk, TimeValue fastBulk){
+      this.maxBulkActions = maxBulkActions;
+      this.maxConcurrency = maxConcurrency;
+      this.slowBulkMillis = slowBulk.millis();
+      this.fastBulkMillis = fastBulk.millis();
+      this.bulkActions = maxBulkActions;
+      this.concurrency = maxConcurrency;
+   }
+
+   public synchronized int getBulkActions(){
+      return bulkActions;
+   }
+
+   public synchronized int getConcurrency(){
+      return concurrency;
+   }
+
+   /**
+    * Record the outcome of an executed bulk.
+    * @param tookMillis Time taken by bulk execution
+    * @param rejected Whether bulk or some of its items have been rejected
+    * @return true if bulk size or concurrency has changed
+    */
+   public synchronized boolean onBulk(long tookMillis, boolean rejected){
+      if (rejected || tookMillis > slowBulkMillis){
+         fastBulks = 0;
+         return shrink();
+      }
+      if (tookMillis < fastBulkMillis){
+         fastBulks++;
+         if (fastBulks >= FAST_BULKS_BEFORE_GROWING){
+            fastBulks = 0;
+            return grow();
+         }
+      } else {
+         fastBulks = 0;
+      }
+      return false;
+   }
+
+   /**
+    * Record a bulk failing as a whole.
+    * @param rejected Whether failure is a rejection
+    * @return true if bulk size or concurrency has changed
+    */
+   public synchronized boolean onBulkFailure(boolean rejected){
+      fastBulks = 0;
+      return rejected && shrink();
+   }
+
+   private boolean shrink(){
+      int previousActions = bulkActions;
+      int previousConcurrency = concurrency;
+      bulkActions = Math.max(Math.min(MIN_BULK_ACTIONS, maxBulkActions), bulkActions / 2);
+      concurrency = Math.max(1, concurrency - 1);
+      return previousActions != bulkActions || previousConcurrency != concurrency;
+   }
+
+   private boolean grow(){
+      int previousActions = bulkActions;
+      int previousConcurrency = concurrency;
+      bulkActions = Math.min(maxBulkActions, bulkActions + Math.max(1, bulkActions / 4));
+      concurrency = Math.min(maxConcurrency, concurrency + 1);
+      return previousActions != bulkActions || previousConcurrency != concurrency;
+   }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+/**
+ * A fixed size pool of worker threads with a bounded number of in-flight tasks.
+ * Submitting a task blocks as long as the pool is saturated, so that the producer
+ * (the bucket scanner) never gets too far ahead of downloads and extractions.
+ * Slots are given to waiting producers in arrival order, so that producers sharing
+ * the pool (the scanners of different feeds) get their turn one after another.
+ * @author laurent
+ */
+public class BoundedWorkerPool{
+
+   /** Interval at which waiting for completion checks whether pool has been shut down. */
+   private static final long SHUTDOWN_CHECK_MILLIS = 100;
+
+   private final ThreadPoolExecutor executor;
+
+   private final ResizableSemaphore inFlight;
+
+   /** Number of tasks allowed in flight per worker thread, kept when concurrency changes. */
+   private final double inFlightPerWorker;
+
+   private volatile int maxInFlight;
+
+
+   /**
+    * Create a new pool.
+    * @param concurrency Number of worker threads
+    * @param maxInFlight Maximum number of tasks running or waiting for a worker
+    * @param threadFactory Factory used for creating worker threads
+    */
+   public BoundedWorkerPool(int concurrency, int maxInFlight, ThreadFactory threadFactory){
+      this.maxInFlight = Math.max(maxInFlight, concurrency);
+      this.inFlightPerWorker = (double) this.maxInFlight / concurrency;
+      this.inFlight = new ResizableSemaphore(this.maxInFlight);
+      this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+   }
+
+   private void submit(Runnable task, TaskGroup group) throws InterruptedException{
+      inFlight.acquire();
+      PoolTask poolTask = new PoolTask(task, group);
+      try{
+         executor.execute(poolTask);
+      } catch (RuntimeException re){
+         // Task has been rejected, release its slot before propagating.
+         poolTask.done();
+         throw re;
+      }
+   }
+
+   /**
+    * Create a group for tracking completion of the tasks of a single producer,
+    * when other producers are submitting to this pool as well.
+    * @return A new empty group of tasks
+    */
+   public TaskGroup newTaskGroup(){
+      return new TaskGroup();
+   }
+
+   /**
+    * Change the number of worker threads, and the number of tasks in flight accordingly.
+    * Tasks already running or waiting are not interrupted when reducing concurrency : pool
+    * shrinks as workers become idle, and producers wait until in-flight tasks are below the
+    * new bound.
+    * @param concurrency The new number of worker threads
+    */
+   public synchronized void setConcurrency(int concurrency){
+      if (concurrency > executor.getMaximumPoolSize()){
+         executor.setMaximumPoolSize(concurrency);
+         executor.setCorePoolSize(concurrency);
+      } else {
+         executor.setCorePoolSize(concurrency);
+         executor.setMaximumPoolSize(concurrency);
+      }
+      int newMaxInFlight = Math.max(concurrency, (int) Math.round(concurrency * inFlightPerWorker));
+      if (newMaxInFlight > maxInFlight){
+         inFlight.release(newMaxInFlight - maxInFlight);
+      } else if (newMaxInFlight < maxInFlight){
+         inFlight.reducePermits(maxInFlight - newMaxInFlight);
+      }
+      maxInFlight = newMaxInFlight;
+   }
+
+   /** @return The number of tasks running or waiting for a worker */
+   public int getInFlight(){
+      return maxInFlight - inFlight.availablePermits();
+   }
+
+   /** @return The current maximum number of tasks running or waiting for a worker */
+   public int getMaxInFlight(){
+      return maxInFlight;
+   }
+
+   /** @return The current number of worker threads */
+   public int getConcurrency(){
+      return executor.getCorePoolSize();
+   }
+
+   /**
+    * Stop accepting tasks and interrupt running ones. Tasks still waiting for a worker
+    * are dropped, releasing their slots so that producers waiting for one are not stuck.
+    */
+   public void shutdown(){
+      for (Runnable dropped : executor.shutdownNow()){
+         ((PoolTask) dropped).done();
+      }
+   }
+
+   private void checkNotShutdown() throws InterruptedException{
+      if (executor.isShutdown()){
+         throw new InterruptedException("Worker pool has been shut down");
+      }
+   }
+
+   /** A fair semaphore whose permits can be removed, even those currently acquired. */
+   private static class ResizableSemaphore extends Semaphore{
+
+      private ResizableSemaphore(int permits){
+         super(permits, true);
+      }
+
+      @Override
+      protected void reducePermits(int reduction){
+         super.reducePermits(reduction);
+      }
+   }
+
+   /** A submitted task, releasing its slot once run or dropped. */
+   private class PoolTask implements Runnable{
+
+      private final Runnable task;
+      private final TaskGroup group;
+
+      private PoolTask(Runnable task, TaskGroup group){
+         this.task = task;
+         this.group = group;
+         group.taskSubmitted();
+      }
+
+      @Override
+      public void run(){
+         try{
+            task.run();
+         } finally {
+            done();
+         }
+      }
+
+      private void done(){
+         // Group first, so that a free pool implies completed groups.
+         group.taskDone();
+         inFlight.release();
+      }
+   }
+
+   /** Tasks submitted to the pool whose completion can be awaited apart from other tasks. */
+   public class TaskGroup{
+
+      private int pending = 0;
+
+      private TaskGroup(){
+      }
+
+      /**
+       * Submit a task to the pool as part of this group, waiting for a free slot if pool is saturated.
+       * @param task The task to execute
+       * @throws InterruptedException if interrupted while waiting for a free slot
+       */
+      public void submit(Runnable task) throws InterruptedException{
+         BoundedWorkerPool.this.submit(task, this);
+      }
+
+      /**
+       * Wait for every task previously submitted to this group to be completed.
+       * @throws InterruptedException if interrupted while waiting, or if pool is shut down
+       *    while tasks of this group are still running
+       */
+      public synchronized void awaitCompletion() throws InterruptedException{
+         while (pending > 0){
+            checkNotShutdown();
+            wait(SHUTDOWN_CHECK_MILLIS);
+         }
+      }
+
+      private synchronized void taskSubmitted(){
+         pending++;
+      }
+
+      private synchronized void taskDone(){
+         pending--;
+         if (pending == 0){
+            notifyAll();
+         }
+      }
+   }
+}
@@ -0,0 +1,349 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+/**
+ * An immutable set of keys, stored sorted and prefix-compressed (front coding) into a
+ * single byte array. S3 keys of a bucket share long common prefixes so this takes a
+ * fraction of the memory a set of String would take, while lookups stay logarithmic :
+ * a binary search over blocks heads followed by a short scan within a block.
+ * @author laurent
+ */
+public class CompactKeySet{
+
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   /** Number of keys per block. First key of each block is stored uncompressed. */
+   private static final int BLOCK_SIZE = 16;
+
+   private static final CompactKeySet EMPTY = new CompactKeySet(new byte[0], new int[0], 0);
+
+   private final byte[] data;
+   private final int[] blockOffsets;
+   private final int size;
+
+
+   private CompactKeySet(byte[] data, int[] blockOffsets, int size){
+      this.data = data;
+      this.blockOffsets = blockOffsets;
+      this.size = size;
+   }
+
+   /** @return The number of keys into this set */
+   public int size(){
+      return size;
+   }
+
+   /** @return The number of bytes used for storing keys */
+   public long sizeInBytes(){
+      return data.length + blockOffsets.length * 4L;
+   }
+
+   /**
+    * Tell if this set contains a key.
+    * @param key The key to look for
+    * @return true if key is part of this set
+    */
+   public boolean contains(String key){
+      if (size == 0){
+         return false;
+      }
+      byte[] target = key.getBytes(UTF8);
+
+      // Find the last block whose first key is lower or equal to target.
+      int low = 0;
+      int high = blockOffsets.length - 1;
+      while (low < high){
+         int mid = (low + high + 1) >>> 1;
+         if (compareBlockHead(mid, target) <= 0){
+            low = mid;
+         } else {
+            high = mid - 1;
+         }
+      }
+
+      // Then scan this block.
+      Cursor cursor = new Cursor(low);
+      int blockEnd = Math.min(size, (low + 1) * BLOCK_SIZE);
+      for (int i = low * BLOCK_SIZE; i < blockEnd; i++){
+         int cmp = compare(cursor.next(), cursor.length, target, target.length);
+         if (cmp == 0){
+            return true;
+         } else if (cmp > 0){
+            return false;
+         }
+      }
+      return false;
+   }
+
+   private int compareBlockHead(int block, byte[] target){
+      int pos = blockOffsets[block];
+      // Skip shared prefix length which is always 0 for a block head.
+      pos = skipVInt(pos);
+      int length = readVInt(pos);
+      pos = skipVInt(pos);
+      int n = Math.min(length, target.length);
+      for (int i = 0; i < n; i++){
+         int cmp = (data[pos + i] & 0xff) - (target[i] & 0xff);
+         if (cmp != 0){
+            return cmp;
+         }
+      }
+      return length - target.length;
+   }
+
+   private int readVInt(int pos){
+      int result = 0;
+      int shift = 0;
+      byte b;
+      do {
+         b = data[pos++];
+         result |= (b & 0x7f) << shift;
+         shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+   }
+
+   private int skipVInt(int pos){
+      while ((data[pos++] & 0x80) != 0){
+      }
+      return pos;
+   }
+
+   private static int compare(byte[] a, int aLength, byte[] b, int bLength){
+      int n = Math.min(aLength, bLength);
+      for (int i = 0; i < n; i++){
+         int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+         if (cmp != 0){
+            return cmp;
+         }
+      }
+      return aLength - bLength;
+   }
+
+   /** Sequential decoder of keys, starting at a given block. */
+   private class Cursor{
+
+      private int pos;
+      private byte[] current = new byte[64];
+      private int length = 0;
+
+      Cursor(int block){
+         this.pos = blockOffsets.length == 0 ? 0 : blockOffsets[block];
+      }
+
+      /** Decode next key into current buffer and return it. Valid bytes are up to length. */
+      byte[] next(){
+         int prefix = readVInt(pos);
+         pos = skipVInt(pos);
+         int suffix = readVInt(pos);
+         pos = skipVInt(pos);
+         if (prefix + suffix > current.length){
+            current = Arrays.copyOf(current, Math.max(prefix + suffix, current.length * 2));
+         }
+         System.arraycopy(data, pos, current, prefix, suffix);
+         pos += suffix;
+         length = prefix + suffix;
+         return current;
+      }
+
+      byte[] copy(){
+         return Arrays.copyOf(current, length);
+      }
+   }
+
+   /**
+    * Builder for a CompactKeySet. Keys can be added in any order and duplicates are ignored.
+    * Pending keys are compacted into sorted runs as they come, so that the builder never
+    * holds more than a limited number of uncompressed keys. Builder is not thread safe.
+    */
+   public static class Builder{
+
+      private static final Comparator<byte[]> UNSIGNED_BYTES = new Comparator<byte[]>() {
+         @Override
+         public int compare(byte[] a, byte[] b) {
+            return CompactKeySet.compare(a, a.length, b, b.length);
+         }
+      };
+
+      private final int runSize;
+      private List<byte[]> pending = new ArrayList<byte[]>();
+      private List<CompactKeySet> runs = new ArrayList<CompactKeySet>();
+
+      public Builder(){
+         this(64 * 1024);
+      }
+
+      /** @param runSize The number of uncompressed keys to accumulate before compacting them */
+      public Builder(int runSize){
+         this.runSize = runSize;
+      }
+
+      public Builder add(String key){
+         pending.add(key.getBytes(UTF8));
+         if (pending.size() >= runSize){
+            compact();
+         }
+         return this;
+      }
+
+      public CompactKeySet build(){
+         compact();
+         CompactKeySet result;
+         if (runs.isEmpty()){
+            result = EMPTY;
+         } else if (runs.size() == 1){
+            result = runs.get(0);
+         } else {
+            result = merge(runs);
+         }
+         runs = new ArrayList<CompactKeySet>();
+         return result;
+      }
+
+      private void compact(){
+         if (!pending.isEmpty()){
+            Collections.sort(pending, UNSIGNED_BYTES);
+            Encoder encoder = new Encoder();
+            for (byte[] key : pending){
+               encoder.add(key, key.length);
+            }
+            runs.add(encoder.finish());
+            pending = new ArrayList<byte[]>();
+         }
+      }
+
+      /** Merge sorted runs into a single set, removing duplicates across runs. */
+      private static CompactKeySet merge(List<CompactKeySet> runs){
+         PriorityQueue<RunIterator> queue = new PriorityQueue<RunIterator>(runs.size(), new Comparator<RunIterator>() {
+            @Override
+            public int compare(RunIterator a, RunIterator b) {
+               return UNSIGNED_BYTES.compare(a.head, b.head);
+            }
+         });
+         for (CompactKeySet run : runs){
+            RunIterator iterator = new RunIterator(run);
+            if (iterator.advance()){
+               queue.add(iterator);
+            }
+         }
+         Encoder encoder = new Encoder();
+         while (!queue.isEmpty()){
+            RunIterator iterator = queue.poll();
+            encoder.add(iterator.head, iterator.head.length);
+            if (iterator.advance()){
+               queue.add(iterator);
+            }
+         }
+         return encoder.finish();
+      }
+   }
+
+   /** Iterator over the keys of a set, used when merging runs. */
+   private static class RunIterator{
+
+      private final CompactKeySet set;
+      private final Cursor cursor;
+      private int index = 0;
+      private byte[] head;
+
+      RunIterator(CompactKeySet set){
+         this.set = set;
+         this.cursor = set.new Cursor(0);
+      }
+
+      boolean advance(){
+         if (index >= set.size){
+            return false;
+         }
+         cursor.next();
+         head = cursor.copy();
+         index++;
+         return true;
+      }
+   }
+
+   /** Front coding encoder. Keys should be added in ascending order. */
+   private static class Encoder{
+
+      private byte[] data = new byte[1024];
+      private int pos = 0;
+      private int[] blockOffsets = new int[16];
+      private int size = 0;
+      private byte[] previous = new byte[0];
+      private int previousLength = 0;
+
+      void add(byte[] key, int length){
+         // Ignore duplicates that may come from different runs.
+         if (size > 0 && compare(previous, previousLength, key, length) == 0){
+            return;
+         }
+         int prefix = 0;
+         if (size % BLOCK_SIZE == 0){
+            if (size / BLOCK_SIZE == blockOffsets.length){
+               blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+            }
+            blockOffsets[size / BLOCK_SIZE] = pos;
+         } else {
+            int max = Math.min(previousLength, length);
+            while (prefix < max && previous[prefix] == key[prefix]){
+               prefix++;
+            }
+         }
+         ensureCapacity(10 + length - prefix);
+         writeVInt(prefix);
+         writeVInt(length - prefix);
+         System.arraycopy(key, prefix, data, pos, length - prefix);
+         pos += length - prefix;
+
+         if (previous.length < length){
+            previous = new byte[Math.max(length, previous.length * 2)];
+         }
+         System.arraycopy(key, 0, previous, 0, length);
+         previousLength = length;
+         size++;
+      }
+
+      CompactKeySet finish(){
+         int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+         return new CompactKeySet(Arrays.copyOf(data, pos), Arrays.copyOf(blockOffsets, blocks), size);
+      }
+
+      private void ensureCapacity(int extra){
+         if (pos + extra > data.length){
+            data = Arrays.copyOf(data, Math.max(pos + extra, data.length * 2));
+         }
+      }
+
+      private void writeVInt(int value){
+         while ((value & ~0x7f) != 0){
+            data[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+         }
+         data[pos++] = (byte) value;
+      }
+   }
+}
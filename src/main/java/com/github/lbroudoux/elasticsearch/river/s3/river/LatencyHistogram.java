@@ -0,0 +1,133 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+/**
+ * A lock-free histogram of durations in milliseconds, cheap enough to be recorded
+ * from hot paths. Values are counted into logarithmic buckets, each power of two being
+ * split into 8 sub-buckets, so that percentiles are given with a precision of 12.5%.
+ * @author laurent
+ */
+public class LatencyHistogram{
+
+   /** Number of sub-buckets per power of two, as a number of bits. */
+   private static final int SUB_BUCKET_BITS = 3;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+   private final AtomicLongArray buckets = new AtomicLongArray(SUB_BUCKETS * (64 - SUB_BUCKET_BITS));
+   private final AtomicLong count = new AtomicLong();
+   private final AtomicLong sum = new AtomicLong();
+   private final AtomicLong max = new AtomicLong();
+
+
+   /**
+    * Record a duration.
+    * @param millis The duration in milliseconds, negative ones being recorded as 0
+    */
+   public void record(long millis){
+      long value = Math.max(0, millis);
+      buckets.incrementAndGet(bucketOf(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long currentMax = max.get();
+      while (value > currentMax && !max.compareAndSet(currentMax, value)){
+         currentMax = max.get();
+      }
+   }
+
+   public long getCount(){
+      return count.get();
+   }
+
+   public long getMax(){
+      return max.get();
+   }
+
+   /** @return The mean of recorded durations, 0 if none */
+   public double getMean(){
+      long c = count.get();
+      return c == 0 ? 0 : (double) sum.get() / c;
+   }
+
+   /**
+    * Get a percentile of recorded durations.
+    * @param percentile The percentile to get, between 0 and 100
+    * @return The upper bound of the bucket holding this percentile, 0 if nothing has been recorded
+    */
+   public long getPercentile(double percentile){
+      long total = 0;
+      long[] counts = new long[buckets.length()];
+      for (int i = 0; i < counts.length; i++){
+         counts[i] = buckets.get(i);
+         total += counts[i];
+      }
+      if (total == 0){
+         return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++){
+         seen += counts[i];
+         if (seen >= rank){
+            return Math.min(upperBoundOf(i), max.get());
+         }
+      }
+      return max.get();
+   }
+
+   /**
+    * Write count, mean, max and main percentiles of durations into builder.
+    * @param builder The builder to write to
+    * @param name The name of the object holding values
+    */
+   public void toXContent(XContentBuilder builder, String name) throws IOException{
+      builder.startObject(name)
+            .field("count", getCount())
+            .field("mean_ms", getMean())
+            .field("p50_ms", getPercentile(50))
+            .field("p90_ms", getPercentile(90))
+            .field("p99_ms", getPercentile(99))
+            .field("max_ms", getMax())
+         .endObject();
+   }
+
+   static int bucketOf(long value){
+      if (value < SUB_BUCKETS){
+         return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int shift = exponent - SUB_BUCKET_BITS;
+      int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+      return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+   }
+
+   static long upperBoundOf(int bucket){
+      if (bucket < SUB_BUCKETS){
+         return bucket;
+      }
+      int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+      int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+      return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+   }
+}
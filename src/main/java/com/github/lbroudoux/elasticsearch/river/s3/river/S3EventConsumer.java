@@ -0,0 +1,203 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.connector.S3EventSource;
+import com.github.lbroudoux.elasticsearch.river.s3.connector.S3ObjectEvent;
+/**
+ * Consumer of Amazon S3 event notifications, indexing or deleting exactly the objects
+ * touched by events. Events of a same batch are reduced to the latest one per key, and
+ * events are only acknowledged once their objects have been handled. Events are left
+ * on the queue while consumer is paused.
+ * @author laurent
+ */
+public class S3EventConsumer implements Runnable{
+
+   private static final ESLogger logger = Loggers.getLogger(S3EventConsumer.class);
+
+   /** Time to wait before polling again after a failure. */
+   private static final TimeValue FAILURE_BACKOFF = TimeValue.timeValueSeconds(5);
+
+   /** The handler of objects touched by events. */
+   public interface Handler{
+
+      /**
+       * Index created or updated objects, returning once they've been handed to bulk processor.
+       * @param summaries The summaries of objects to index
+       * @return The keys of objects that could not be indexed, and should be notified again
+       */
+      Set<String> index(List<S3ObjectSummary> summaries) throws Exception;
+
+      /**
+       * Delete removed objects from index.
+       * @param keys The keys of removed objects
+       */
+      void delete(List<String> keys) throws Exception;
+   }
+
+   private final S3EventSource source;
+   private final String bucketName;
+   private final String pathPrefix;
+   private final S3KeyMatcher keyMatcher;
+   private final Handler handler;
+   private final long waitMillis;
+
+   private volatile boolean closed = false;
+   private volatile boolean paused = false;
+
+
+   /**
+    * Create a new consumer.
+    * @param source The source of events
+    * @param bucketName The bucket which objects should be handled
+    * @param pathPrefix The prefix of objects to handle, may be null
+    * @param keyMatcher Includes and excludes rules filter
+    * @param handler The handler of objects
+    * @param wait Maximum time to wait for events on each poll
+    */
+   public S3EventConsumer(S3EventSource source, String bucketName, String pathPrefix, S3KeyMatcher keyMatcher,
+         Handler handler, TimeValue wait){
+      this.source = source;
+      this.bucketName = bucketName;
+      this.pathPrefix = pathPrefix;
+      this.keyMatcher = keyMatcher;
+      this.handler = handler;
+      this.waitMillis = wait.millis();
+   }
+
+   @Override
+   public void run(){
+      try{
+         while (!closed){
+            if (paused){
+               Thread.sleep(waitMillis);
+               continue;
+            }
+            try{
+               processNext();
+            } catch (InterruptedException ie){
+               return;
+            } catch (Exception e){
+               logger.warn("Error while consuming events of bucket {}, retrying in {}", e, bucketName, FAILURE_BACKOFF);
+               Thread.sleep(FAILURE_BACKOFF.millis());
+            }
+         }
+      } catch (InterruptedException ie){
+         // Closing river, just exit.
+      } finally {
+         source.close();
+      }
+   }
+
+   /** Stop consuming events. */
+   public void close(){
+      closed = true;
+   }
+
+   /**
+    * Pause or resume consuming events. Events are not polled while paused.
+    * @param paused Whether events should be left on the queue
+    */
+   public void setPaused(boolean paused){
+      this.paused = paused;
+   }
+
+   /**
+    * Poll and handle next batch of events, unless consumer is paused.
+    * @return The number of events received
+    */
+   public int processNext() throws Exception{
+      if (paused){
+         return 0;
+      }
+      List<S3ObjectEvent> events = source.poll(waitMillis);
+      if (events.isEmpty()){
+         return 0;
+      }
+      // Only keep latest event of each handled key.
+      Map<String, S3ObjectEvent> latestEvents = new LinkedHashMap<String, S3ObjectEvent>();
+      for (S3ObjectEvent event : events){
+         if (!isHandled(event)){
+            continue;
+         }
+         S3ObjectEvent latest = latestEvents.get(event.getKey());
+         if (latest == null || event.isAfter(latest)){
+            latestEvents.put(event.getKey(), event);
+         }
+      }
+      List<S3ObjectSummary> created = new ArrayList<S3ObjectSummary>();
+      List<String> removed = new ArrayList<String>();
+      for (S3ObjectEvent event : latestEvents.values()){
+         if (event.getType() == S3ObjectEvent.Type.CREATED){
+            created.add(event.toSummary());
+         } else {
+            removed.add(event.getKey());
+         }
+      }
+      if (logger.isDebugEnabled()){
+         logger.debug("Received {} events, indexing {} and deleting {} objects", events.size(), created.size(), removed.size());
+      }
+      if (!removed.isEmpty()){
+         handler.delete(removed);
+      }
+      Set<String> failedKeys = new HashSet<String>();
+      if (!created.isEmpty()){
+         failedKeys = handler.index(created);
+      }
+      if (failedKeys.isEmpty()){
+         source.acknowledge(events);
+      } else {
+         // A message may hold many events : only acknowledge those of fully handled messages.
+         Set<String> failedReceipts = new HashSet<String>();
+         for (S3ObjectEvent event : events){
+            if (failedKeys.contains(event.getKey())){
+               failedReceipts.add(event.getReceipt());
+            }
+         }
+         List<S3ObjectEvent> handled = new ArrayList<S3ObjectEvent>();
+         for (S3ObjectEvent event : events){
+            if (!failedReceipts.contains(event.getReceipt())){
+               handled.add(event);
+            }
+         }
+         logger.warn("Failed to index {} notified objects of bucket {}, they will be notified again",
+               failedKeys.size(), bucketName);
+         source.acknowledge(handled);
+      }
+      return events.size();
+   }
+
+   private boolean isHandled(S3ObjectEvent event){
+      return bucketName.equals(event.getBucketName())
+            && (pathPrefix == null || event.getKey().startsWith(pathPrefix))
+            && keyMatcher.isIndexable(event.getKey());
+   }
+}
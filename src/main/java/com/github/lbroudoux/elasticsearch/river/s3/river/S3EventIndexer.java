@@ -0,0 +1,126 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * Handler of bucket events, indexing created objects using the workers pool. Objects that
+ * cannot be indexed are reported so that their events are not acknowledged and get delivered
+ * again later. Objects removed before they could be read are deleted from index instead.
+ * @author laurent
+ */
+public class S3EventIndexer implements S3EventConsumer.Handler{
+
+   private static final ESLogger logger = Loggers.getLogger(S3EventIndexer.class);
+
+   /** Indexing of single objects. */
+   public interface FileIndexer{
+
+      /**
+       * Index an object, returning once it has been handed to bulk processor.
+       * @param summary The summary of object to index
+       * @throws Exception if object cannot be downloaded, parsed or indexed
+       */
+      void indexFile(S3ObjectSummary summary) throws Exception;
+
+      /**
+       * Delete a removed object from index.
+       * @param key The key of removed object
+       */
+      void deleteFile(String key) throws Exception;
+   }
+
+   private final BoundedWorkerPool workerPool;
+   private final FileIndexer fileIndexer;
+   private final S3RiverStats stats;
+
+
+   /**
+    * Create a new handler.
+    * @param workerPool The pool objects are indexed by
+    * @param fileIndexer The indexer of single objects
+    * @param stats The statistics of river
+    */
+   public S3EventIndexer(BoundedWorkerPool workerPool, FileIndexer fileIndexer, S3RiverStats stats){
+      this.workerPool = workerPool;
+      this.fileIndexer = fileIndexer;
+      this.stats = stats;
+   }
+
+   @Override
+   public Set<String> index(List<S3ObjectSummary> summaries) throws Exception{
+      stats.picked.inc(summaries.size());
+      final Set<String> failedKeys = Collections.synchronizedSet(new HashSet<String>());
+      BoundedWorkerPool.TaskGroup tasks = workerPool.newTaskGroup();
+      for (final S3ObjectSummary summary : summaries){
+         tasks.submit(new Runnable() {
+            @Override
+            public void run() {
+               try{
+                  fileIndexer.indexFile(summary);
+               } catch (Exception e){
+                  Exception failure = e;
+                  if (isNotFound(e)){
+                     // Object has been removed since notification, its removal is notified too.
+                     logger.debug("Notified object {} does not exist anymore", summary.getKey());
+                     try{
+                        fileIndexer.deleteFile(summary.getKey());
+                        return;
+                     } catch (Exception de){
+                        failure = de;
+                     }
+                  }
+                  logger.warn("Can not index " + summary.getKey() + " : " + failure.getMessage());
+                  stats.failed.inc();
+                  failedKeys.add(summary.getKey());
+               }
+            }
+         });
+      }
+      tasks.awaitCompletion();
+      return failedKeys;
+   }
+
+   @Override
+   public void delete(List<String> keys) throws Exception{
+      for (String key : keys){
+         fileIndexer.deleteFile(key);
+      }
+   }
+
+   /** Tell if failure is due to object not existing anymore. */
+   private static boolean isNotFound(Throwable t){
+      while (t != null){
+         if (t instanceof AmazonServiceException && ((AmazonServiceException) t).getStatusCode() == 404){
+            return true;
+         }
+         t = t.getCause();
+      }
+      return false;
+   }
+}
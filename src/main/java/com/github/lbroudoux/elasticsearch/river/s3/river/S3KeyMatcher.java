@@ -0,0 +1,170 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+/**
+ * Includes and excludes rules compiled once for telling if an Amazon S3 key is indexable.
+ * Rules like <code>*.pdf</code> are answered by a suffix lookup grouped by suffix length,
+ * every other rule is merged into a single alternation pattern per rules list.
+ * @author laurent
+ */
+public class S3KeyMatcher{
+
+   /** A matcher that accepts every key. */
+   public static final S3KeyMatcher ALL = new S3KeyMatcher(null, null);
+
+   private final Rules includes;
+   private final Rules excludes;
+
+
+   private S3KeyMatcher(Rules includes, Rules excludes){
+      this.includes = includes;
+      this.excludes = excludes;
+   }
+
+   /**
+    * Compile includes and excludes rules. Rules are globs where <code>*</code> matches any
+    * sequence of characters and <code>?</code> matches at most one character.
+    * @param includes Rules of keys to include (may be null or empty)
+    * @param excludes Rules of keys to exclude (may be null or empty)
+    * @return A compiled matcher
+    */
+   public static S3KeyMatcher compile(List<String> includes, List<String> excludes){
+      return new S3KeyMatcher(Rules.compile(includes), Rules.compile(excludes));
+   }
+
+   /**
+    * Tells if an Amazon S3 key is indexable.
+    * @param key The key (file name) of S3 object
+    * @return true if file should be indexed, false otherwise
+    */
+   public boolean isIndexable(String key){
+      // Exclude rules : we know that whatever includes rules are, we should exclude matching files.
+      if (excludes != null && excludes.matches(key)){
+         return false;
+      }
+      // Include rules : we should add document if it match include rules.
+      return includes == null || includes.matches(key);
+   }
+
+   /** A compiled list of rules. */
+   private static class Rules{
+
+      private final int[] suffixLengths;
+      private final List<Set<String>> suffixes;
+      private final Pattern pattern;
+
+      private Rules(int[] suffixLengths, List<Set<String>> suffixes, Pattern pattern){
+         this.suffixLengths = suffixLengths;
+         this.suffixes = suffixes;
+         this.pattern = pattern;
+      }
+
+      static Rules compile(List<String> rules){
+         if (rules == null || rules.isEmpty()){
+            return null;
+         }
+         TreeMap<Integer, Set<String>> suffixesByLength = new TreeMap<Integer, Set<String>>();
+         List<String> regexes = new ArrayList<String>();
+         for (String rule : rules){
+            if (isExtensionRule(rule)){
+               // "*.ext" is like ".*?.ext" : any char followed by "ext" at the end of key.
+               String suffix = rule.substring(2);
+               Set<String> sameLength = suffixesByLength.get(suffix.length());
+               if (sameLength == null){
+                  sameLength = new HashSet<String>();
+                  suffixesByLength.put(suffix.length(), sameLength);
+               }
+               sameLength.add(suffix);
+            } else {
+               regexes.add("(?:" + rule.replace("?", ".?").replace("*", ".*?") + ")");
+            }
+         }
+
+         int[] suffixLengths = new int[suffixesByLength.size()];
+         List<Set<String>> suffixes = new ArrayList<Set<String>>(suffixesByLength.size());
+         int i = 0;
+         for (Integer length : suffixesByLength.keySet()){
+            suffixLengths[i++] = length;
+            suffixes.add(suffixesByLength.get(length));
+         }
+         Pattern pattern = null;
+         if (!regexes.isEmpty()){
+            StringBuilder alternation = new StringBuilder();
+            for (String regex : regexes){
+               if (alternation.length() > 0){
+                  alternation.append('|');
+               }
+               alternation.append(regex);
+            }
+            pattern = Pattern.compile(alternation.toString());
+         }
+         return new Rules(suffixLengths, suffixes, pattern);
+      }
+
+      /** Extension rules are "*." followed by letters, digits, '_' or '-' only. */
+      private static boolean isExtensionRule(String rule){
+         if (rule.length() < 3 || !rule.startsWith("*.")){
+            return false;
+         }
+         for (int i = 2; i < rule.length(); i++){
+            char c = rule.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-'){
+               return false;
+            }
+         }
+         return true;
+      }
+
+      boolean matches(String key){
+         int keyLength = key.length();
+         for (int i = 0; i < suffixLengths.length; i++){
+            // Suffix should be preceded by at least one character.
+            if (keyLength <= suffixLengths[i]){
+               break;
+            }
+            if (suffixes.get(i).contains(key.substring(keyLength - suffixLengths[i]))){
+               // Like in regex rules, '*' does not match line terminators.
+               if (!hasLineTerminator(key)){
+                  return true;
+               }
+               break;
+            }
+         }
+         return pattern != null && pattern.matcher(key).matches();
+      }
+
+      /** Line terminators are the characters not matched by '.' in a regex. */
+      private static boolean hasLineTerminator(String key){
+         for (int i = 0; i < key.length(); i++){
+            char c = key.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029'){
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+}
@@ -18,11 +18,28 @@
  */
 package com.github.lbroudoux.elasticsearch.river.s3.river;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.bulk.*;
 import org.elasticsearch.action.get.GetResponse;
@@ -34,21 +51,33 @@ import org.elasticsearch.cluster.block.ClusterBlockException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.river.AbstractRiverComponent;
 import org.elasticsearch.river.River;
 import org.elasticsearch.river.RiverName;
 import org.elasticsearch.river.RiverSettings;
 import org.elasticsearch.search.SearchHit;
 
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.connector.S3ObjectContent;
 import com.github.lbroudoux.elasticsearch.river.s3.connector.S3ObjectSummaries;
+import com.github.lbroudoux.elasticsearch.river.s3.connector.S3ObjectSummariesListener;
 import com.github.lbroudoux.elasticsearch.river.s3.connector.S3Connector;
-import com.github.lbroudoux.elasticsearch.river.s3.river.TikaHolder;
+import com.github.lbroudoux.elasticsearch.river.s3.extractor.ExtractionExecutor;
+import com.github.lbroudoux.elasticsearch.river.s3.extractor.ExtractionLimitException;
+import com.github.lbroudoux.elasticsearch.river.s3.extractor.ExtractorRegistry;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
@@ -58,6 +87,69 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
  */
 public class S3River extends AbstractRiverComponent implements River{
 
+   /** Keep alive of scrolls used for browsing already indexed files. */
+   private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+   /** Number of hits per shard retrieved at each scroll step. */
+   private static final int SCROLL_SIZE = 1000;
+
+   /** Default size of a bulk in bytes, in addition to its number of actions. */
+   private static final ByteSizeValue DEFAULT_BULK_SIZE_BYTES = new ByteSizeValue(5, ByteSizeUnit.MB);
+
+   /** Default interval for flushing a bulk, whatever its size. */
+   private static final TimeValue DEFAULT_FLUSH_INTERVAL = TimeValue.timeValueSeconds(5);
+
+   /** Key of the number of retries into a rejected request context. */
+   private static final String RETRY_ATTEMPTS_CONTEXT_KEY = "s3river.retry.attempts";
+
+   /** Key of the S3 last modification time of indexed file into index requests context. */
+   private static final String LAST_MODIFIED_CONTEXT_KEY = "s3river.last.modified";
+
+   /** Maximum number of times a rejected request is retried. */
+   private static final int MAX_RETRY_ATTEMPTS = 5;
+
+   /** Delay before first retry of a rejected request, doubled at each attempt. */
+   private static final TimeValue RETRY_INITIAL_DELAY = TimeValue.timeValueMillis(500);
+
+   /** Maximum time to wait for an interrupted scan to record its progress when closing river. */
+   private static final TimeValue SCAN_CLOSE_TIMEOUT = TimeValue.timeValueSeconds(10);
+
+   /** Maximum time to wait for pending bulks when closing river. */
+   private static final TimeValue BULK_CLOSE_TIMEOUT = TimeValue.timeValueSeconds(30);
+
+   /** Id of the river document holding progress of current scan, suffixed by feed when river has many. */
+   private static final String CHECKPOINT_ID = "_s3checkpoint";
+
+   /** Field of the river document holding last scan time, which is also its id when river has a single feed. */
+   private static final String LAST_SCAN_TIME_FIELD = "_lastScanTime";
+
+   /** Minimum time between two records of scan progress. */
+   private static final TimeValue CHECKPOINT_INTERVAL = TimeValue.timeValueSeconds(30);
+
+   /** Default size above which container files are staged on disk before being parsed. */
+   private static final ByteSizeValue DEFAULT_STAGING_THRESHOLD = new ByteSizeValue(8, ByteSizeUnit.MB);
+
+   /** Default maximum total size of files staged on disk. */
+   private static final ByteSizeValue DEFAULT_STAGING_BUDGET = new ByteSizeValue(1, ByteSizeUnit.GB);
+
+   /** Default size of parts when downloading large files in parallel. */
+   private static final ByteSizeValue DEFAULT_DOWNLOAD_PART_SIZE = new ByteSizeValue(16, ByteSizeUnit.MB);
+
+   /** Maximum time to wait for events on each poll of event queue. */
+   private static final TimeValue EVENTS_WAIT = TimeValue.timeValueSeconds(20);
+
+   /** Default maximum time allowed for extracting content of a file. */
+   private static final TimeValue DEFAULT_EXTRACTION_TIMEOUT = TimeValue.timeValueMinutes(5);
+
+   /** Settings that apply to the river as a whole, and thus cannot be overridden by a feed. */
+   private static final Set<String> RIVER_WIDE_SETTINGS = new HashSet<String>(Arrays.asList("feeds",
+         "feed_concurrency", "update_rate", "concurrency", "json_support", "accessKey", "secretKey", "use_EC2_IAM",
+         "download_part_size", "download_parallelism", "staging_dir", "staging_threshold", "staging_budget",
+         "extraction_timeout"));
+
+   /** Default maximum number of feeds listed concurrently. */
+   private static final int DEFAULT_FEED_CONCURRENCY = 4;
+
    private final Client client;
 
    private final ThreadPool threadPool;
@@ -68,58 +160,132 @@ public class S3River extends AbstractRiverComponent implements River{
 
    private final int bulkSize;
 
+   private final ByteSizeValue bulkSizeBytes;
+
+   private final TimeValue flushInterval;
+
+   private final int concurrentBulkRequests;
+
    private RiverStatus riverStatus;
 
-   private volatile Thread feedThread;
+   /** Scanners of river feeds, sharing workers pool, extraction executor and bulk processor. */
+   private volatile List<S3Scanner> scanners;
+
+   private volatile ScanTask scanTask;
+
+   /** Guards scans scheduling : next scheduled scan, whether a scan is running or has been requested. */
+   private final Object scanLock = new Object();
+
+   private ScheduledFuture<?> nextScan;
+
+   private boolean scanning = false;
+
+   private boolean scanRequested = false;
+
+   /** Thread running current scan, interrupted when closing river. */
+   private Thread scanThread;
 
    private volatile BulkProcessor bulkProcessor;
 
+   private volatile AdaptiveBulkController bulkController;
+
+   private volatile int currentBulkActions;
+
+   /** Guards bulk processor replacement : adding requests needs read lock, replacing needs write lock. */
+   private final ReadWriteLock bulkLock = new ReentrantReadWriteLock();
+
+   private volatile BoundedWorkerPool workerPool;
+
+   private volatile UnchangedObjectFilter unchangedFilter;
+
+   private final List<S3EventConsumer> eventConsumers = new CopyOnWriteArrayList<S3EventConsumer>();
+
+   private StagingArea stagingArea;
+
+   private final ExtractorRegistry extractors = ExtractorRegistry.defaultRegistry();
+
+   private volatile ExtractionExecutor extractionExecutor;
+
+   private final S3RiverRegistry registry;
+
+   private final S3RiverStats stats = new S3RiverStats();
+
+   private final AtomicInteger runningBulks = new AtomicInteger();
+
+   private final List<Thread> eventThreads = new CopyOnWriteArrayList<Thread>();
+
    private volatile boolean closed = false;
+
+   /** Whether river is started or has been stopped using management actions. */
+   private volatile boolean started = true;
    
+   /** River settings, which are also the ones of its single feed when no feeds are given. */
    private final S3RiverFeedDefinition feedDefinition;
+
+   private final List<S3RiverFeedDefinition> feedDefinitions;
+
+   private final int feedConcurrency;
    
    private final S3Connector s3;
+
+   /** Connectors of feeds, the first one being s3 and others sharing its client. */
+   private final List<S3Connector> feedConnectors;
    
    
    @Inject
    @SuppressWarnings({ "unchecked" })
-   protected S3River(RiverName riverName, RiverSettings settings, Client client, ThreadPool threadPool) throws Exception{
+   protected S3River(RiverName riverName, RiverSettings settings, Client client, ThreadPool threadPool,
+         S3RiverRegistry registry) throws Exception{
       super(riverName, settings);
       this.client = client;
       this.threadPool = threadPool;
+      this.registry = registry;
       this.riverStatus = RiverStatus.UNKNOWN;
       
       // Deal with connector settings.
       if (settings.settings().containsKey("amazon-s3")){
          Map<String, Object> feed = (Map<String, Object>)settings.settings().get("amazon-s3");
          
-         // Retrieve feed settings.
-         String feedname = XContentMapValues.nodeStringValue(feed.get("name"), null);
-         String bucket = XContentMapValues.nodeStringValue(feed.get("bucket"), null);
-         String pathPrefix = XContentMapValues.nodeStringValue(feed.get("pathPrefix"), null);
-         String downloadHost = XContentMapValues.nodeStringValue(feed.get("download_host"), null);
-         int updateRate = XContentMapValues.nodeIntegerValue(feed.get("update_rate"), 15 * 60 * 1000);
-         boolean jsonSupport = XContentMapValues.nodeBooleanValue(feed.get("json_support"), false);
-         double indexedCharsRatio  = XContentMapValues.nodeDoubleValue(feed.get("indexed_chars_ratio"), 0.0);
-         
-         String[] includes = S3RiverUtil.buildArrayFromSettings(settings.settings(), "amazon-s3.includes");
-         String[] excludes = S3RiverUtil.buildArrayFromSettings(settings.settings(), "amazon-s3.excludes");
-         
-         // Retrieve connection settings.
-         String accessKey = XContentMapValues.nodeStringValue(feed.get("accessKey"), null);
-         String secretKey = XContentMapValues.nodeStringValue(feed.get("secretKey"), null);
-         boolean useIAMRoleForEC2 = XContentMapValues.nodeBooleanValue(feed.get("use_EC2_IAM"), false);
-         
-         feedDefinition = new S3RiverFeedDefinition(feedname, bucket, pathPrefix, downloadHost,
-               updateRate, Arrays.asList(includes), Arrays.asList(excludes), accessKey, secretKey, useIAMRoleForEC2,
-               jsonSupport, indexedCharsRatio);
+         // Settings of the river as a whole, also being the single feed of river if no feeds are given.
+         feedDefinition = buildFeedDefinition(feed);
+         feedConcurrency = Math.max(1, XContentMapValues.nodeIntegerValue(feed.get("feed_concurrency"), DEFAULT_FEED_CONCURRENCY));
+         if (feed.containsKey("feeds")){
+            feedDefinitions = new ArrayList<S3RiverFeedDefinition>();
+            for (Object feedSettings : (List<Object>)feed.get("feeds")){
+               // Each feed inherits river settings and may override them. A queue only
+               // receives events of a single feed, so that it is never inherited.
+               Map<String, Object> feedMap = new HashMap<String, Object>(feed);
+               feedMap.remove("feeds");
+               feedMap.remove("sqs_queue_url");
+               for (String key : ((Map<String, Object>)feedSettings).keySet()){
+                  if (RIVER_WIDE_SETTINGS.contains(key)){
+                     logger.error("Amazon S3 setting {} applies to the river as a whole and cannot be set by a feed. Please fix this.", key);
+                     throw new IllegalArgumentException("Amazon S3 setting " + key + " cannot be set by a feed.");
+                  }
+               }
+               feedMap.putAll((Map<String, Object>)feedSettings);
+               feedDefinitions.add(buildFeedDefinition(feedMap));
+            }
+            if (feedDefinitions.isEmpty()){
+               logger.error("Amazon S3 feeds should not be empty. Please fix this.");
+               throw new IllegalArgumentException("Amazon S3 feeds should not be empty.");
+            }
+         } else {
+            feedDefinitions = Collections.singletonList(feedDefinition);
+         }
       } else {
          logger.error("You didn't define the amazon-s3 settings. Exiting... See https://github.com/lbroudoux/es-amazon-s3-river");
          indexName = null;
          typeName = null;
          bulkSize = 100;
+         bulkSizeBytes = DEFAULT_BULK_SIZE_BYTES;
+         flushInterval = DEFAULT_FLUSH_INTERVAL;
+         concurrentBulkRequests = 1;
          feedDefinition = null;
+         feedDefinitions = Collections.emptyList();
+         feedConcurrency = DEFAULT_FEED_CONCURRENCY;
          s3 = null;
+         feedConnectors = Collections.emptyList();
          return;
       }
       
@@ -130,16 +296,25 @@ public class S3River extends AbstractRiverComponent implements River{
          indexName = XContentMapValues.nodeStringValue(indexSettings.get("index"), riverName.name());
          typeName = XContentMapValues.nodeStringValue(indexSettings.get("type"), S3RiverUtil.INDEX_TYPE_DOC);
          bulkSize = XContentMapValues.nodeIntegerValue(indexSettings.get("bulk_size"), 100);
+         bulkSizeBytes = ByteSizeValue.parseBytesSizeValue(
+               XContentMapValues.nodeStringValue(indexSettings.get("bulk_size_bytes"), null), DEFAULT_BULK_SIZE_BYTES);
+         flushInterval = XContentMapValues.nodeTimeValue(indexSettings.get("flush_interval"), DEFAULT_FLUSH_INTERVAL);
+         concurrentBulkRequests = XContentMapValues.nodeIntegerValue(indexSettings.get("concurrent_bulk_requests"), 1);
       } else {
          indexName = riverName.name();
          typeName = S3RiverUtil.INDEX_TYPE_DOC;
          bulkSize = 100;
+         bulkSizeBytes = DEFAULT_BULK_SIZE_BYTES;
+         flushInterval = DEFAULT_FLUSH_INTERVAL;
+         concurrentBulkRequests = 1;
       }
       
       // We need to connect to Amazon S3 after ensure mandatory settings are here.
-      if (feedDefinition.getBucket() == null){
-         logger.error("Amazon S3 bucket should not be null. Please fix this.");
-         throw new IllegalArgumentException("Amazon S3 bucket should not be null.");
+      for (S3RiverFeedDefinition definition : feedDefinitions){
+         if (definition.getBucket() == null){
+            logger.error("Amazon S3 bucket should not be null. Please fix this.");
+            throw new IllegalArgumentException("Amazon S3 bucket should not be null.");
+         }
       }
       // Connect using the appropriate authentication process.
       if (feedDefinition.getAccessKey() == null && feedDefinition.getSecretKey() == null) {
@@ -147,16 +322,94 @@ public class S3River extends AbstractRiverComponent implements River{
       } else {
          s3 = new S3Connector(feedDefinition.getAccessKey(), feedDefinition.getSecretKey());
       }
+      feedConnectors = new ArrayList<S3Connector>();
       try {
-         s3.connectUserBucket(feedDefinition.getBucket(), feedDefinition.getPathPrefix());
+         s3.connectUserBucket(feedDefinitions.get(0).getBucket(), feedDefinitions.get(0).getPathPrefix());
+         if (feedDefinition.getDownloadParallelism() > 1){
+            s3.setParallelDownload(feedDefinition.getDownloadPartSize().bytes(), feedDefinition.getDownloadParallelism());
+         }
+         // Other feeds share client, connections and download threads of the first one.
+         for (S3RiverFeedDefinition definition : feedDefinitions){
+            S3Connector connector = feedConnectors.isEmpty() ? s3
+                  : s3.connectFeed(definition.getBucket(), definition.getPathPrefix());
+            connector.setListingConcurrency(definition.getListingConcurrency());
+            connector.setListingSplitPoints(definition.getListingSplitPoints());
+            if (definition.getInventoryBucket() != null){
+               connector.setInventory(definition.getInventoryBucket(), definition.getInventoryPrefix());
+            }
+            feedConnectors.add(connector);
+         }
       } catch (AmazonS3Exception ase){
          logger.error("Exception while connecting Amazon S3 user bucket. "
                + "Either access key, secret key, IAM Role or bucket name are incorrect");
          throw ase;
       }
+      stagingArea = new StagingArea(new File(feedDefinition.getStagingDirectory()),
+            feedDefinition.getStagingThreshold().bytes(), feedDefinition.getStagingBudget().bytes());
 
       this.riverStatus = RiverStatus.INITIALIZED;
    }
+
+   /** Build the definition of a feed from its settings. */
+   private S3RiverFeedDefinition buildFeedDefinition(Map<String, Object> feed){
+      // Retrieve feed settings.
+      String feedname = XContentMapValues.nodeStringValue(feed.get("name"), null);
+      String bucket = XContentMapValues.nodeStringValue(feed.get("bucket"), null);
+      String pathPrefix = XContentMapValues.nodeStringValue(feed.get("pathPrefix"), null);
+      String downloadHost = XContentMapValues.nodeStringValue(feed.get("download_host"), null);
+      int updateRate = XContentMapValues.nodeIntegerValue(feed.get("update_rate"), 15 * 60 * 1000);
+      boolean jsonSupport = XContentMapValues.nodeBooleanValue(feed.get("json_support"), false);
+      double indexedCharsRatio  = XContentMapValues.nodeDoubleValue(feed.get("indexed_chars_ratio"), 0.0);
+      int concurrency = XContentMapValues.nodeIntegerValue(feed.get("concurrency"), 1);
+      int listingConcurrency = XContentMapValues.nodeIntegerValue(feed.get("listing_concurrency"), 1);
+      boolean skipUnchanged = XContentMapValues.nodeBooleanValue(feed.get("skip_unchanged"), true);
+      boolean storeIndexedDate = XContentMapValues.nodeBooleanValue(feed.get("store_indexed_date"), false);
+      String eventQueueUrl = XContentMapValues.nodeStringValue(feed.get("sqs_queue_url"), null);
+      String inventoryBucket = XContentMapValues.nodeStringValue(feed.get("inventory_bucket"), null);
+      String inventoryPrefix = XContentMapValues.nodeStringValue(feed.get("inventory_prefix"), null);
+      ByteSizeValue downloadPartSize = ByteSizeValue.parseBytesSizeValue(
+            XContentMapValues.nodeStringValue(feed.get("download_part_size"), null), DEFAULT_DOWNLOAD_PART_SIZE);
+      int downloadParallelism = XContentMapValues.nodeIntegerValue(feed.get("download_parallelism"), 1);
+      String stagingDirectory = XContentMapValues.nodeStringValue(feed.get("staging_dir"),
+            new File(System.getProperty("java.io.tmpdir"), "es-s3-river-" + riverName.name()).getPath());
+      ByteSizeValue stagingThreshold = ByteSizeValue.parseBytesSizeValue(
+            XContentMapValues.nodeStringValue(feed.get("staging_threshold"), null), DEFAULT_STAGING_THRESHOLD);
+      ByteSizeValue stagingBudget = ByteSizeValue.parseBytesSizeValue(
+            XContentMapValues.nodeStringValue(feed.get("staging_budget"), null), DEFAULT_STAGING_BUDGET);
+      TimeValue extractionTimeout = XContentMapValues.nodeTimeValue(feed.get("extraction_timeout"), DEFAULT_EXTRACTION_TIMEOUT);
+      String extractionMaxSize = XContentMapValues.nodeStringValue(feed.get("extraction_max_size"), null);
+      
+      String[] includes = S3RiverUtil.buildArrayFromSettings(feed, "includes");
+      String[] excludes = S3RiverUtil.buildArrayFromSettings(feed, "excludes");
+      String[] listingSplitPoints = S3RiverUtil.buildArrayFromSettings(feed, "listing_split_points");
+      
+      // Retrieve connection settings.
+      String accessKey = XContentMapValues.nodeStringValue(feed.get("accessKey"), null);
+      String secretKey = XContentMapValues.nodeStringValue(feed.get("secretKey"), null);
+      boolean useIAMRoleForEC2 = XContentMapValues.nodeBooleanValue(feed.get("use_EC2_IAM"), false);
+      
+      S3RiverFeedDefinition definition = new S3RiverFeedDefinition(feedname, bucket, pathPrefix, downloadHost,
+            updateRate, Arrays.asList(includes), Arrays.asList(excludes), accessKey, secretKey, useIAMRoleForEC2,
+            jsonSupport, indexedCharsRatio);
+      definition.setConcurrency(Math.max(1, concurrency));
+      definition.setListingConcurrency(Math.max(1, listingConcurrency));
+      definition.setSkipUnchanged(skipUnchanged);
+      definition.setStoreIndexedDate(storeIndexedDate);
+      definition.setListingSplitPoints(Arrays.asList(listingSplitPoints));
+      definition.setEventQueueUrl(eventQueueUrl);
+      definition.setInventoryBucket(inventoryBucket);
+      definition.setInventoryPrefix(inventoryPrefix);
+      definition.setDownloadPartSize(downloadPartSize);
+      definition.setDownloadParallelism(Math.max(1, downloadParallelism));
+      definition.setStagingDirectory(stagingDirectory);
+      definition.setStagingThreshold(stagingThreshold);
+      definition.setStagingBudget(stagingBudget);
+      definition.setExtractionTimeout(extractionTimeout);
+      if (extractionMaxSize != null){
+         definition.setExtractionMaxSize(ByteSizeValue.parseBytesSizeValue(extractionMaxSize));
+      }
+      return definition;
+   }
    
    @Override
    public void start(){
@@ -165,6 +418,7 @@ public class S3River extends AbstractRiverComponent implements River{
       }
 
       this.riverStatus = RiverStatus.STARTING;
+      registry.register(riverName.name(), this);
       // Let's start this in another thread so we won't stop the start process
       threadPool.generic().execute(new Runnable() {
          @Override
@@ -201,41 +455,54 @@ public class S3River extends AbstractRiverComponent implements River{
                return;
             }
 
-            // Creating bulk processor
-            bulkProcessor = BulkProcessor.builder(client, new BulkProcessor.Listener() {
-               @Override
-               public void beforeBulk(long id, BulkRequest request) {
-                  logger.debug("Going to execute new bulk composed of {} actions", request.numberOfActions());
-               }
+            // Creating bulk processor, sized by adaptive controller.
+            bulkController = new AdaptiveBulkController(bulkSize, feedDefinition.getConcurrency());
+            currentBulkActions = bulkController.getBulkActions();
+            bulkProcessor = buildBulkProcessor(currentBulkActions);
 
-               @Override
-               public void afterBulk(long id, BulkRequest request, BulkResponse response) {
-                  logger.debug("Executed bulk composed of {} actions", request.numberOfActions());
-                  if (response.hasFailures()) {
-                     logger.warn("There was failures while executing bulk", response.buildFailureMessage());
-                     if (logger.isDebugEnabled()) {
-                        for (BulkItemResponse item : response.getItems()) {
-                           if (item.isFailed()) {
-                              logger.debug("Error for {}/{}/{} for {} operation: {}", item.getIndex(),
-                                    item.getType(), item.getId(), item.getOpType(), item.getFailureMessage());
-                           }
-                        }
-                     }
-                  }
-               }
+            unchangedFilter = new UnchangedObjectFilter(client, indexName, typeName);
 
-               @Override
-               public void afterBulk(long id, BulkRequest request, Throwable throwable) {
-                  logger.warn("Error executing bulk", throwable);
+            // Remove files staged by a previous run that may have crashed.
+            stagingArea.purge();
+
+            // Creating workers pool for downloading and extracting files in parallel.
+            // We allow a few tasks waiting for each worker so that they never starve.
+            workerPool = new BoundedWorkerPool(feedDefinition.getConcurrency(), feedDefinition.getConcurrency() * 2,
+                  EsExecutors.daemonThreadFactory(settings.globalSettings(), "s3_river_worker"));
+            // Extractions run apart from workers so that a runaway parser can be given up.
+            // No more runaway parsers than workers are allowed to run at once.
+            extractionExecutor = new ExtractionExecutor(feedDefinition.getExtractionTimeout().millis(),
+                  feedDefinition.getConcurrency(),
+                  EsExecutors.daemonThreadFactory(settings.globalSettings(), "s3_river_extractor"));
+
+            // Scans are run by thread pool, each one scheduling the next one.
+            // Every feed keeps its own scan state when river has many feeds.
+            List<S3Scanner> feedScanners = new ArrayList<S3Scanner>();
+            for (int i = 0; i < feedDefinitions.size(); i++){
+               S3RiverFeedDefinition definition = feedDefinitions.get(i);
+               String stateIdSuffix = feedDefinitions.size() == 1 ? ""
+                     : "_" + definition.getBucket() + "/" + (definition.getPathPrefix() != null ? definition.getPathPrefix() : "");
+               feedScanners.add(new S3Scanner(definition, feedConnectors.get(i), stateIdSuffix));
+            }
+            scanners = feedScanners;
+            scanTask = new ScanTask();
+            scheduleScan(TimeValue.timeValueMillis(0));
+
+            // Consume bucket events of feeds defining a queue, periodic scans becoming a safety net.
+            for (S3Scanner scanner : feedScanners){
+               S3RiverFeedDefinition definition = scanner.feedDefinition;
+               if (definition.getEventQueueUrl() != null){
+                  S3EventConsumer eventConsumer = new S3EventConsumer(s3.connectEventQueue(definition.getEventQueueUrl()),
+                        definition.getBucket(), definition.getPathPrefix(), definition.getKeyMatcher(),
+                        new S3EventIndexer(workerPool, scanner, stats), EVENTS_WAIT);
+                  eventConsumer.setPaused(!started);
+                  Thread eventThread = EsExecutors.daemonThreadFactory(settings.globalSettings(), "s3_river_events")
+                        .newThread(eventConsumer);
+                  eventConsumers.add(eventConsumer);
+                  eventThreads.add(eventThread);
+                  eventThread.start();
                }
-            })
-                  .setBulkActions(bulkSize)
-                  .build();
-
-            // We create as many Threads as there are feeds.
-            feedThread = EsExecutors.daemonThreadFactory(settings.globalSettings(), "fs_slurper")
-                  .newThread(new S3Scanner(feedDefinition));
-            feedThread.start();
+            }
             riverStatus = RiverStatus.RUNNING;
          }
       });   
@@ -249,14 +516,329 @@ public class S3River extends AbstractRiverComponent implements River{
       }
       closed = true;
       riverStatus = RiverStatus.STOPPING;
+      registry.unregister(riverName.name(), this);
       
-      // We have to close the Thread.
-      if (feedThread != null){
-         feedThread.interrupt();
+      // Cancel the scheduled scan and wake up the running one, which may be waiting for workers.
+      Thread runningScan;
+      synchronized (scanLock){
+         if (nextScan != null){
+            nextScan.cancel(false);
+         }
+         runningScan = scanThread;
+         if (runningScan != null){
+            runningScan.interrupt();
+         }
+      }
+      for (S3EventConsumer eventConsumer : eventConsumers){
+         eventConsumer.close();
+      }
+      for (Thread eventThread : eventThreads){
+         eventThread.interrupt();
+      }
+      if (workerPool != null){
+         workerPool.shutdown();
+      }
+      if (extractionExecutor != null){
+         extractionExecutor.shutdown();
+      }
+      for (S3Connector connector : feedConnectors){
+         connector.close();
+      }
+      // Interrupted scan records its checkpoint into bulk processor : wait for it before closing it.
+      if (runningScan != null){
+         try{
+            runningScan.join(SCAN_CLOSE_TIMEOUT.millis());
+            if (runningScan.isAlive()){
+               logger.warn("Scan still running after {}, its progress may not be recorded", SCAN_CLOSE_TIMEOUT);
+            }
+         } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+         }
+      }
+      // Flush pending documents and wait for in-flight bulks.
+      if (bulkProcessor != null){
+         try{
+            if (!bulkProcessor.awaitClose(BULK_CLOSE_TIMEOUT.millis(), TimeUnit.MILLISECONDS)){
+               logger.warn("Bulks still running after {}, closing anyway", BULK_CLOSE_TIMEOUT);
+            }
+         } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+         }
       }
       riverStatus = RiverStatus.STOPPED;
    }
    
+   /** @return true unless river has been stopped using management actions */
+   public boolean isStarted(){
+      return started;
+   }
+
+   /**
+    * Start or stop this river. Persisting this status into river is the caller responsibility.
+    * @param started Whether river should scan bucket
+    */
+   public void setStarted(boolean started){
+      boolean wasStarted = this.started;
+      updateStarted(started);
+      if (started && !wasStarted){
+         scanNow();
+      }
+   }
+
+   /** Record started status, leaving events on queues while river is stopped. */
+   private void updateStarted(boolean started){
+      this.started = started;
+      for (S3EventConsumer eventConsumer : eventConsumers){
+         eventConsumer.setPaused(!started);
+      }
+   }
+
+   /**
+    * Trigger a scan of bucket without waiting for update rate. If a scan is running,
+    * another one starts as soon as it ends.
+    */
+   public void scanNow(){
+      synchronized (scanLock){
+         if (scanning){
+            scanRequested = true;
+         } else {
+            scheduleScan(TimeValue.timeValueMillis(0));
+         }
+      }
+   }
+
+   /** Schedule next scan, replacing the one already scheduled if any. */
+   private void scheduleScan(TimeValue delay){
+      synchronized (scanLock){
+         if (closed || scanTask == null){
+            return;
+         }
+         if (nextScan != null){
+            nextScan.cancel(false);
+         }
+         if (logger.isDebugEnabled()){
+            logger.debug("Next scan of Amazon S3 river is going to start in {}", delay);
+         }
+         nextScan = threadPool.schedule(delay, ThreadPool.Names.GENERIC, scanTask);
+      }
+   }
+
+   /** @return true if running scan should stop as soon as possible */
+   private boolean isScanCancelled(){
+      return closed || !started;
+   }
+
+   /**
+    * Write ingestion statistics of this river into builder.
+    * @param builder The builder to write to
+    */
+   public void statsToXContent(XContentBuilder builder) throws IOException{
+      builder.field("status", riverStatus.name());
+      builder.field("started", started);
+      builder.field("feeds", feedDefinitions.size());
+      if (s3 != null){
+         stats.toXContent(builder, s3.getListLatency(), s3.getGetLatency());
+      }
+      BoundedWorkerPool pool = workerPool;
+      ExtractionExecutor extraction = extractionExecutor;
+      builder.startObject("queues")
+            .field("workers", pool != null ? pool.getConcurrency() : 0)
+            .field("in_flight_files", pool != null ? pool.getInFlight() : 0)
+            .field("running_bulks", runningBulks.get())
+            .field("bulk_actions", currentBulkActions)
+            .field("staged_bytes", stagingArea != null ? stagingArea.getUsed() : 0)
+            .field("runaway_extractions", extraction != null ? extraction.getAbandonedCount() : 0)
+            .field("refused_extractions", extraction != null ? extraction.getRefusedCount() : 0)
+         .endObject();
+   }
+
+   /** Build a bulk processor executing bulks of given number of actions. */
+   private BulkProcessor buildBulkProcessor(int bulkActions){
+      return BulkProcessor.builder(client, new BulkListener())
+            .setBulkActions(bulkActions)
+            .setBulkSize(bulkSizeBytes)
+            .setFlushInterval(flushInterval)
+            .setConcurrentRequests(concurrentBulkRequests)
+            .build();
+   }
+
+   /** Add a request to current bulk processor. */
+   private void addToBulk(ActionRequest<?> request){
+      bulkLock.readLock().lock();
+      try{
+         bulkProcessor.add(request);
+      } finally {
+         bulkLock.readLock().unlock();
+      }
+   }
+
+   /** Add to bulk an IndexRequest. */
+   private void esIndex(String index, String type, String id, XContentBuilder xb) throws Exception{
+      esIndex(index, type, id, xb, null);
+   }
+
+   /** Add to bulk an IndexRequest for a S3 file modified at lastModified. */
+   private void esIndex(String index, String type, String id, XContentBuilder xb, Date lastModified) throws Exception{
+      if (logger.isDebugEnabled()){
+         logger.debug("Indexing in ES " + index + ", " + type + ", " + id);
+      }
+      if (logger.isTraceEnabled()){
+         logger.trace("Json indexed : {}", xb.string());
+      }
+      addToBulk(withLastModified(client.prepareIndex(index, type, id).setSource(xb).request(), lastModified));
+   }
+
+   /** Add to bulk an IndexRequest for a S3 file modified at lastModified. */
+   private void esIndex(String index, String type, String id, byte[] json, Date lastModified) throws Exception{
+      if (logger.isDebugEnabled()){
+         logger.debug("Indexing in ES " + index + ", " + type + ", " + id);
+      }
+      if (logger.isTraceEnabled()){
+         logger.trace("Json indexed : {}", json);
+      }
+      addToBulk(withLastModified(client.prepareIndex(index, type, id).setSource(json).request(), lastModified));
+   }
+
+   /** Keep track of S3 file modification time along with request for measuring freshness. */
+   private ActionRequest<?> withLastModified(ActionRequest<?> request, Date lastModified){
+      if (lastModified != null){
+         request.putInContext(LAST_MODIFIED_CONTEXT_KEY, lastModified.getTime());
+      }
+      return request;
+   }
+
+   /** Add to bulk a DeleteRequest. */
+   private void esDelete(String index, String type, String id) throws Exception{
+      if (logger.isDebugEnabled()){
+         logger.debug("Deleting from ES " + index + ", " + type + ", " + id);
+      }
+      addToBulk(client.prepareDelete(index, type, id).request());
+   }
+
+   /**
+    * Apply bulk size and download concurrency decided by controller. This is done
+    * asynchronously as bulk listener may be called while adding to current processor.
+    */
+   private void applyBulkController(){
+      threadPool.generic().execute(new Runnable() {
+         @Override
+         public void run() {
+            if (closed){
+               return;
+            }
+            int concurrency = bulkController.getConcurrency();
+            int bulkActions = bulkController.getBulkActions();
+            logger.info("Adapting bulk size to {} actions and download concurrency to {}", bulkActions, concurrency);
+            if (workerPool != null){
+               workerPool.setConcurrency(concurrency);
+            }
+            if (bulkActions != currentBulkActions){
+               BulkProcessor previous;
+               bulkLock.writeLock().lock();
+               try{
+                  previous = bulkProcessor;
+                  bulkProcessor = buildBulkProcessor(bulkActions);
+                  currentBulkActions = bulkActions;
+               } finally {
+                  bulkLock.writeLock().unlock();
+               }
+               // Flush what remains into previous processor.
+               previous.close();
+            }
+         }
+      });
+   }
+
+   /** Schedule a rejected request for being added again to bulk, with exponential backoff. */
+   private void retryLater(final ActionRequest<?> request){
+      int attempts = request.getFromContext(RETRY_ATTEMPTS_CONTEXT_KEY, 0);
+      if (attempts >= MAX_RETRY_ATTEMPTS){
+         logger.warn("Giving up request {} after {} rejections", request, attempts);
+         stats.failed.inc();
+         return;
+      }
+      request.putInContext(RETRY_ATTEMPTS_CONTEXT_KEY, attempts + 1);
+      TimeValue delay = TimeValue.timeValueMillis(RETRY_INITIAL_DELAY.millis() << attempts);
+      threadPool.schedule(delay, ThreadPool.Names.GENERIC, new Runnable() {
+         @Override
+         public void run() {
+            if (!closed){
+               addToBulk(request);
+            }
+         }
+      });
+   }
+
+   /** Listener of bulks execution, feeding the adaptive controller and retrying rejected requests. */
+   private class BulkListener implements BulkProcessor.Listener{
+
+      @Override
+      public void beforeBulk(long id, BulkRequest request) {
+         logger.debug("Going to execute new bulk composed of {} actions", request.numberOfActions());
+         runningBulks.incrementAndGet();
+      }
+
+      @Override
+      public void afterBulk(long id, BulkRequest request, BulkResponse response) {
+         logger.debug("Executed bulk composed of {} actions", request.numberOfActions());
+         runningBulks.decrementAndGet();
+         stats.bulkLatency.record(response.getTookInMillis());
+         long now = System.currentTimeMillis();
+         for (BulkItemResponse item : response.getItems()){
+            if (!item.isFailed() && indexName.equals(item.getIndex())){
+               if ("delete".equals(item.getOpType())){
+                  stats.deleted.inc();
+               } else {
+                  stats.indexed.inc();
+                  // File is now indexed, measure how long it took since it has been modified on S3.
+                  Long lastModified = request.requests().get(item.getItemId()).getFromContext(LAST_MODIFIED_CONTEXT_KEY);
+                  if (lastModified != null){
+                     stats.freshness.record(now - lastModified);
+                  }
+               }
+            }
+         }
+         boolean rejected = false;
+         if (response.hasFailures()) {
+            logger.warn("There was failures while executing bulk", response.buildFailureMessage());
+            for (BulkItemResponse item : response.getItems()) {
+               if (item.isFailed()) {
+                  if (logger.isDebugEnabled()) {
+                     logger.debug("Error for {}/{}/{} for {} operation: {}", item.getIndex(),
+                           item.getType(), item.getId(), item.getOpType(), item.getFailureMessage());
+                  }
+                  if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS){
+                     rejected = true;
+                     retryLater(request.requests().get(item.getItemId()));
+                  } else {
+                     stats.failed.inc();
+                  }
+               }
+            }
+         }
+         if (bulkController.onBulk(response.getTookInMillis(), rejected)){
+            applyBulkController();
+         }
+      }
+
+      @Override
+      public void afterBulk(long id, BulkRequest request, Throwable throwable) {
+         logger.warn("Error executing bulk", throwable);
+         runningBulks.decrementAndGet();
+         boolean rejected = ExceptionsHelper.unwrapCause(throwable) instanceof EsRejectedExecutionException;
+         if (rejected){
+            for (ActionRequest<?> actionRequest : request.requests()){
+               retryLater(actionRequest);
+            }
+         } else {
+            stats.failed.inc(request.numberOfActions());
+         }
+         if (bulkController.onBulkFailure(rejected)){
+            applyBulkController();
+         }
+      }
+   }
+   
    /**
     * Check if a mapping already exists in an index
     * @param index Index name
@@ -327,55 +909,175 @@ public class S3River extends AbstractRiverComponent implements River{
       }
    }
    
-   /** */
-   private class S3Scanner implements Runnable{
-      
-      private BulkRequestBuilder bulk;
-      private S3RiverFeedDefinition feedDefinition;
-      
-      public S3Scanner(S3RiverFeedDefinition feedDefinition){
-         this.feedDefinition = feedDefinition;
-      }
-      
+   /** Periodic scan of every feed of river, each scan scheduling the next one. */
+   private class ScanTask implements Runnable{
+
       @Override
       public void run(){
-         while (true){
-            if (closed){
+         synchronized (scanLock){
+            if (scanning){
+               // A scan has been requested while this one was starting.
+               scanRequested = true;
+               return;
+            }
+            scanning = true;
+            scanRequested = false;
+            scanThread = Thread.currentThread();
+         }
+         try{
+            scanCycle();
+         } finally {
+            synchronized (scanLock){
+               // Do not leave an interruption from close() to next task of thread pool.
+               scanThread = null;
+               Thread.interrupted();
+               scanning = false;
+               scheduleScan(scanRequested ? TimeValue.timeValueMillis(0)
+                     : TimeValue.timeValueMillis(feedDefinition.getUpdateRate()));
+               scanRequested = false;
+            }
+         }
+      }
+
+      /** Scan feeds if river is started. */
+      private void scanCycle(){
+         if (closed){
+            return;
+         }
+
+         try{
+            loadStatusFromRiver();
+            if (started){
+               stats.scanStarted();
+               try{
+                  scanFeeds();
+               } finally {
+                  stats.scanEnded();
+               }
+            } else {
+               logger.info("Amazon S3 River is disabled for {}", riverName().name());
+            }
+         } catch (Exception e){
+            if (isScanCancelled()){
+               logger.info("Scan of river {} has been cancelled", riverName().name());
                return;
             }
+            logger.warn("Error while indexing content of river {}", e, riverName().name());
+         }
+      }
 
+      /**
+       * Scan every feed, a bounded number of them at once, then delete files that are no longer
+       * part of any feed. Deletions are skipped if a feed failed, as its keys are not all known.
+       */
+      private void scanFeeds() throws Exception{
+         // We build a compact set of index ids corresponding to S3 keys of all feeds for later deletions.
+         final CompactKeySet.Builder summariesIdsBuilder = new CompactKeySet.Builder();
+         List<S3Scanner> feedScanners = scanners;
+         boolean failed = false;
+         if (feedScanners.size() == 1){
+            feedScanners.get(0).scanFeed(summariesIdsBuilder);
+         } else {
+            // Feeds submit their files to the shared workers pool, which serves them in turn.
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(feedConcurrency, feedScanners.size()),
+                  EsExecutors.daemonThreadFactory(settings.globalSettings(), "s3_river_feed"));
             try{
-               if (isStarted()){
-                  // Scan folder starting from last changes id, then record the new one.
-                  Long lastScanTime = getLastScanTimeFromRiver("_lastScanTime");
-                  lastScanTime = scan(lastScanTime);
-                  updateRiver("_lastScanTime", lastScanTime);
-               } else {
-                  logger.info("Amazon S3 River is disabled for {}", riverName().name());
+               List<Future<Void>> futures = new ArrayList<Future<Void>>();
+               for (final S3Scanner scanner : feedScanners){
+                  futures.add(executor.submit(new Callable<Void>() {
+                     @Override
+                     public Void call() throws Exception {
+                        scanner.scanFeed(summariesIdsBuilder);
+                        return null;
+                     }
+                  }));
                }
-            } catch (Exception e){
-               logger.warn("Error while indexing content from {}", feedDefinition.getBucket());
-               if (logger.isDebugEnabled()){
-                  logger.debug("Exception for folder {} is {}", feedDefinition.getBucket(), e);
-                  e.printStackTrace();
+               for (int i = 0; i < futures.size(); i++){
+                  try{
+                     futures.get(i).get();
+                  } catch (ExecutionException ee){
+                     failed = true;
+                     if (!isScanCancelled()){
+                        logger.warn("Error while indexing content from {}", ee.getCause(),
+                              feedScanners.get(i).describe());
+                     }
+                  }
                }
+            } finally {
+               executor.shutdownNow();
+               awaitFeedsTermination(executor);
             }
-            
-            try {
-               if (logger.isDebugEnabled()){
-                  logger.debug("Amazon S3 river is going to sleep for {} ms", feedDefinition.getUpdateRate());
+         }
+         if (isScanCancelled()){
+            throw new InterruptedException("Scan has been cancelled");
+         }
+         if (failed){
+            logger.warn("Some feeds of river {} have failed, removed files are going to be deleted on next scan",
+                  riverName().name());
+            return;
+         }
+
+         // Now, because we do not get changes but only present files, we should 
+         // compare previously indexed files with latest to extract deleted ones...
+         CompactKeySet summariesIds = summariesIdsBuilder.build();
+         if (logger.isDebugEnabled()){
+            logger.debug("Built set of {} current ids using {} bytes", summariesIds.size(), summariesIds.sizeInBytes());
+         }
+         // Documents of a feed are those whose id starts with the id of its path prefix, without
+         // those of feeds with a more specific prefix. Inventory reports ignore objects created
+         // after them : only documents modified before report of their own feed are considered.
+         // Feeds with the same prefix cannot be told apart and share the earliest report time.
+         // Root scope is always present, so that documents of no feed are deleted as well.
+         Map<String, Long> listedBeforeByScope = new TreeMap<String, Long>();
+         listedBeforeByScope.put("", null);
+         for (S3Scanner scanner : feedScanners){
+            String scope = scanner.idPrefix();
+            Long listedBefore = listedBeforeByScope.get(scope);
+            if (scanner.listedBefore != null){
+               listedBefore = listedBefore == null ? scanner.listedBefore : Math.min(listedBefore, scanner.listedBefore);
+            }
+            listedBeforeByScope.put(scope, listedBefore);
+         }
+         for (Map.Entry<String, Long> scope : listedBeforeByScope.entrySet()){
+            List<String> nestedScopes = new ArrayList<String>();
+            for (String other : listedBeforeByScope.keySet()){
+               if (other.length() > scope.getKey().length() && other.startsWith(scope.getKey())){
+                  nestedScopes.add(other);
                }
-               Thread.sleep(feedDefinition.getUpdateRate());
-            } catch (InterruptedException ie){
             }
+            deleteRemovedFiles(summariesIds, scope.getKey(), nestedScopes, scope.getValue());
          }
       }
       
-      private boolean isStarted(){
-         // Refresh index before querying it.
-         client.admin().indices().prepareRefresh("_river").execute().actionGet();
-         GetResponse isStartedGetResponse = client.prepareGet("_river", riverName().name(), "_s3status").execute().actionGet();
+      /**
+       * Wait for feed threads to end, so that cancelled feeds have recorded their checkpoint
+       * when scan ends. Scan interruption is kept for the caller.
+       */
+      private void awaitFeedsTermination(ExecutorService executor){
+         boolean interrupted = false;
+         long deadline = System.currentTimeMillis() + SCAN_CLOSE_TIMEOUT.millis();
+         try{
+            while (!executor.isTerminated() && System.currentTimeMillis() < deadline){
+               try{
+                  executor.awaitTermination(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+               } catch (InterruptedException ie){
+                  interrupted = true;
+               }
+            }
+         } finally {
+            if (interrupted){
+               Thread.currentThread().interrupt();
+            }
+         }
+      }
+
+      /**
+       * Synchronize started status with the one recorded into river, which may have been changed
+       * by a management action received by another node. Get is realtime : no refresh is needed.
+       */
+      private void loadStatusFromRiver(){
          try{
+            GetResponse isStartedGetResponse = client.prepareGet("_river", riverName().name(), "_s3status").execute().actionGet();
             if (!isStartedGetResponse.isExists()){
                XContentBuilder xb = jsonBuilder().startObject()
                      .startObject("amazon-s3")
@@ -383,32 +1085,138 @@ public class S3River extends AbstractRiverComponent implements River{
                         .field("status", "STARTED").endObject()
                      .endObject();
                client.prepareIndex("_river", riverName.name(), "_s3status").setSource(xb).execute();
-               return true;
+               updateStarted(true);
             } else {
                String status = (String)XContentMapValues.extractValue("amazon-s3.status", isStartedGetResponse.getSourceAsMap());
-               if ("STOPPED".equals(status)){
-                  return false;
-               }
+               updateStarted(!"STOPPED".equals(status));
             }
          } catch (Exception e){
-            logger.warn("failed to get status for " + riverName().name() + ", throttling....", e);
+            logger.warn("failed to get status for " + riverName().name() + ", keeping current one", e);
+         }
+      }
+      
+      /**
+       * Scroll through the ids of files already present into index and delete those
+       * that are not part of current S3 keys. Only ids are retrieved : no source, no fields.
+       * Only files whose id starts with idPrefix but none of nestedPrefixes are considered and,
+       * if listedBefore is given, only those modified before this time.
+       */
+      private void deleteRemovedFiles(CompactKeySet summariesIds, String idPrefix, List<String> nestedPrefixes,
+            Long listedBefore) throws Exception{
+         BoolQueryBuilder query = QueryBuilders.boolQuery().must(idPrefix.isEmpty() ? QueryBuilders.matchAllQuery()
+               : QueryBuilders.prefixQuery("_id", idPrefix));
+         for (String nestedPrefix : nestedPrefixes){
+            query.mustNot(QueryBuilders.prefixQuery("_id", nestedPrefix));
+         }
+         if (listedBefore != null && !feedDefinition.isJsonSupport()){
+            query.must(QueryBuilders.rangeQuery(S3RiverUtil.DOC_FIELD_MODIFIED_DATE).lt(listedBefore));
+         }
+         SearchResponse response = client
+               .prepareSearch(indexName)
+               .setSearchType(SearchType.SCAN)
+               .setTypes(typeName)
+               .setNoFields()
+               .setQuery(query)
+               .setScroll(SCROLL_KEEP_ALIVE)
+               .setSize(SCROLL_SIZE)
+               .execute().actionGet();
+         String scrollId = response.getScrollId();
+         try{
+            while (true){
+               response = client.prepareSearchScroll(scrollId).setScroll(SCROLL_KEEP_ALIVE).execute().actionGet();
+               scrollId = response.getScrollId();
+               if (response.getHits().getHits().length == 0){
+                  break;
+               }
+               if (isScanCancelled()){
+                  throw new InterruptedException("Scan has been cancelled");
+               }
+               for (SearchHit hit : response.getHits().getHits()){
+                  if (!summariesIds.contains(hit.getId())){
+                     esDelete(indexName, typeName, hit.getId());
+                  }
+               }
+            }
+         } finally {
+            if (scrollId != null){
+               client.prepareClearScroll().addScrollId(scrollId).execute();
+            }
+         }
+      }
+   }
+
+   /** Scanner of a feed of river, also handling events of its bucket. */
+   private class S3Scanner implements S3EventIndexer.FileIndexer{
+      
+      private final S3RiverFeedDefinition feedDefinition;
+      private final S3Connector s3;
+      private final String lastScanTimeId;
+      private final String checkpointId;
+      private long lastCheckpointSave;
+      private volatile boolean checkpointSaved;
+
+      /** Scan state, loaded from river once and then kept in memory. */
+      private boolean stateLoaded = false;
+      private Long lastScanTime;
+      private ScanCheckpoint pendingCheckpoint;
+
+      /** Time objects have been listed at by last scan of an inventory, null for listing. */
+      private Long listedBefore;
+      
+      /**
+       * @param feedDefinition The definition of feed
+       * @param s3 The connector to bucket of feed
+       * @param stateIdSuffix Suffix of the ids of river documents holding scan state of feed
+       */
+      public S3Scanner(S3RiverFeedDefinition feedDefinition, S3Connector s3, String stateIdSuffix){
+         this.feedDefinition = feedDefinition;
+         this.s3 = s3;
+         this.lastScanTimeId = LAST_SCAN_TIME_FIELD + stateIdSuffix;
+         this.checkpointId = CHECKPOINT_ID + stateIdSuffix;
+      }
+
+      /** @return The prefix of ids of documents indexing objects of feed */
+      private String idPrefix(){
+         return feedDefinition.getPathPrefix() != null ? S3RiverUtil.buildIndexIdFromS3Key(feedDefinition.getPathPrefix()) : "";
+      }
+
+      /** @return The bucket and path prefix of feed, for logging */
+      private String describe(){
+         return feedDefinition.getBucket() + (feedDefinition.getPathPrefix() != null ? "/" + feedDefinition.getPathPrefix() : "");
+      }
+
+      /**
+       * Scan bucket of feed starting from last changes, adding ids of current objects
+       * to summariesIdsBuilder, then record the new last scan time.
+       */
+      private void scanFeed(CompactKeySet.Builder summariesIdsBuilder) throws Exception{
+         if (!stateLoaded){
+            // Resume from state recorded by a previous run of river, if any.
+            lastScanTime = getLastScanTimeFromRiver();
+            pendingCheckpoint = getCheckpointFromRiver(lastScanTime);
+            checkpointSaved = pendingCheckpoint != null;
+            stateLoaded = true;
+         }
+         lastScanTime = scan(lastScanTime, pendingCheckpoint, summariesIdsBuilder);
+         pendingCheckpoint = null;
+         updateRiver(lastScanTime);
+         if (checkpointSaved){
+            esDelete("_river", riverName.name(), checkpointId);
+            checkpointSaved = false;
          }
-         return true;
       }
       
       @SuppressWarnings("unchecked")
-      private Long getLastScanTimeFromRiver(String lastScanTimeField){
+      private Long getLastScanTimeFromRiver(){
          Long result = null;
          try {
-            // Do something.
-            client.admin().indices().prepareRefresh("_river").execute().actionGet();
             GetResponse lastSeqGetResponse = client.prepareGet("_river", riverName().name(),
-                  lastScanTimeField).execute().actionGet();
+                  lastScanTimeId).execute().actionGet();
             if (lastSeqGetResponse.isExists()) {
                Map<String, Object> fsState = (Map<String, Object>) lastSeqGetResponse.getSourceAsMap().get("amazon-s3");
 
                if (fsState != null){
-                  Object lastScanTime= fsState.get(lastScanTimeField);
+                  Object lastScanTime= fsState.get(LAST_SCAN_TIME_FIELD);
                   if (lastScanTime != null){
                      try{
                         result = Long.parseLong(lastScanTime.toString());
@@ -420,7 +1228,7 @@ public class S3River extends AbstractRiverComponent implements River{
             } else {
                // This is first call, just log in debug mode.
                if (logger.isDebugEnabled()){
-                  logger.debug("{} doesn't exist", lastScanTimeField);
+                  logger.debug("{} doesn't exist", lastScanTimeId);
                }
             }
          } catch (Exception e) {
@@ -433,124 +1241,330 @@ public class S3River extends AbstractRiverComponent implements River{
          return result;
       }
       
-      /** Scan the Amazon S3 bucket for last changes. */
-      private Long scan(Long lastScanTime) throws Exception{
-         if (logger.isDebugEnabled()){
-            logger.debug("Starting scanning of bucket {} since {}", feedDefinition.getBucket(), lastScanTime);
+      /**
+       * Get the checkpoint of an interrupted scan. Checkpoint is only valid if it
+       * has been recorded by a scan starting from the current last scan time.
+       */
+      @SuppressWarnings("unchecked")
+      private ScanCheckpoint getCheckpointFromRiver(Long lastScanTime){
+         try{
+            GetResponse checkpointGetResponse = client.prepareGet("_river", riverName().name(), checkpointId)
+                  .execute().actionGet();
+            if (checkpointGetResponse.isExists()){
+               ScanCheckpoint checkpoint = ScanCheckpoint.fromMap(
+                     (Map<String, Object>) checkpointGetResponse.getSourceAsMap().get("amazon-s3"));
+               if (checkpoint != null && (lastScanTime == null ? checkpoint.getLastScanTime() == null
+                     : lastScanTime.equals(checkpoint.getLastScanTime()))){
+                  return checkpoint;
+               }
+               logger.debug("Ignoring checkpoint not matching lastScanTime {}", lastScanTime);
+            }
+         } catch (Exception e){
+            logger.warn("failed to get scan checkpoint, scanning from start", e);
          }
-         S3ObjectSummaries summaries = s3.getObjectSummaries(lastScanTime);
-         
-         // Store now already indexed ids.
-         List<String> previousFileIds = getAlreadyIndexFileIds();
-         
-         // Browse change and checks if its indexable before starting.
-         for (S3ObjectSummary summary : summaries.getPickedSummaries()){
-            if (S3RiverUtil.isIndexable(summary.getKey(), feedDefinition.getIncludes(), feedDefinition.getExcludes())){
-               indexFile(summary);
+         return null;
+      }
+
+      /** Record checkpoint of current scan into river if it has moved since last time. */
+      private void saveCheckpoint(ScanCheckpoint checkpoint, boolean force){
+         synchronized (checkpoint){
+            long now = System.currentTimeMillis();
+            if (!checkpoint.isDirty() || (!force && now - lastCheckpointSave < CHECKPOINT_INTERVAL.millis())){
+               return;
+            }
+            lastCheckpointSave = now;
+            try{
+               XContentBuilder xb = jsonBuilder().startObject().startObject("amazon-s3")
+                     .field("feedname", feedDefinition.getFeedname());
+               checkpoint.toXContent(xb);
+               xb.endObject().endObject();
+               esIndex("_river", riverName.name(), checkpointId, xb);
+               checkpointSaved = true;
+            } catch (Exception e){
+               logger.warn("failed to record scan checkpoint", e);
             }
          }
-         
-         // Now, because we do not get changes but only present files, we should 
-         // compare previously indexed files with latest to extract deleted ones...
-         // But before, we need to produce a list of index ids corresponding to S3 keys.
-         List<String> summariesIds = new ArrayList<String>();
-         for (String key : summaries.getKeys()){
-            summariesIds.add(buildIndexIdFromS3Key(key));
+      }
+
+      /**
+       * Scan the Amazon S3 bucket for last changes. If a checkpoint is given, objects already
+       * processed by the interrupted scan are skipped : bucket is still fully listed so that
+       * deleted objects can be detected, but they are neither downloaded nor indexed again.
+       */
+      private Long scan(Long lastScanTime, ScanCheckpoint resumedCheckpoint,
+            final CompactKeySet.Builder summariesIdsBuilder) throws Exception{
+         final ScanCheckpoint checkpoint;
+         if (resumedCheckpoint != null){
+            logger.info("Resuming interrupted scan of bucket {} since {}", feedDefinition.getBucket(), lastScanTime);
+            checkpoint = resumedCheckpoint;
+         } else {
+            if (logger.isDebugEnabled()){
+               logger.debug("Starting scanning of bucket {} since {}", feedDefinition.getBucket(), lastScanTime);
+            }
+            checkpoint = new ScanCheckpoint(lastScanTime, System.currentTimeMillis());
          }
-         for (String previousFileId : previousFileIds){
-            if (!summariesIds.contains(previousFileId)){
-               esDelete(indexName, typeName, previousFileId);
+         lastCheckpointSave = System.currentTimeMillis();
+         // Listing pages are streamed to workers as they arrive, while we add index ids
+         // corresponding to S3 keys to the set of river for later deletions.
+         // Connector only retains indexable objects.
+         final BoundedWorkerPool.TaskGroup tasks = workerPool.newTaskGroup();
+         long requestsBefore = s3.getRequestCount();
+         final AtomicLong skippedObjects = new AtomicLong();
+         final AtomicLong skippedBytes = new AtomicLong();
+         Long listingTime;
+         try{
+            listingTime = s3.listObjectSummaries(lastScanTime, feedDefinition.getKeyMatcher(), new S3ObjectSummariesListener() {
+               @Override
+               public void onPage(String partition, S3ObjectSummaries page) throws InterruptedException {
+                  if (isScanCancelled()){
+                     throw new InterruptedException("Scan has been cancelled");
+                  }
+                  synchronized (summariesIdsBuilder){
+                     for (String key : page.getKeys()){
+                        summariesIdsBuilder.add(S3RiverUtil.buildIndexIdFromS3Key(key));
+                     }
+                  }
+                  stats.listed.inc(page.getListedCount());
+                  stats.filtered.inc(page.getListedCount() - page.getKeys().size());
+                  List<S3ObjectSummary> pickedSummaries = new ArrayList<S3ObjectSummary>(page.getPickedSummaries().size());
+                  for (S3ObjectSummary summary : page.getPickedSummaries()){
+                     if (!checkpoint.isAlreadyProcessed(partition, summary.getKey())){
+                        pickedSummaries.add(summary);
+                     }
+                  }
+                  stats.picked.inc(pickedSummaries.size());
+                  List<S3ObjectSummary> changedSummaries = pickedSummaries;
+                  if (feedDefinition.isSkipUnchanged() && !feedDefinition.isJsonSupport()){
+                     changedSummaries = unchangedFilter.filter(pickedSummaries);
+                     long skippedSize = 0;
+                     for (S3ObjectSummary summary : pickedSummaries){
+                        skippedSize += summary.getSize();
+                     }
+                     for (S3ObjectSummary summary : changedSummaries){
+                        skippedSize -= summary.getSize();
+                     }
+                     skippedObjects.addAndGet(pickedSummaries.size() - changedSummaries.size());
+                     stats.skipped.inc(pickedSummaries.size() - changedSummaries.size());
+                     skippedBytes.addAndGet(skippedSize);
+                  }
+                  String lastKey = page.getKeys().isEmpty() ? null : page.getKeys().get(page.getKeys().size() - 1);
+                  final Object pageHandle = checkpoint.pageStarted(partition, lastKey, changedSummaries.size());
+                  for (final S3ObjectSummary summary : changedSummaries){
+                     tasks.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                           if (isScanCancelled()){
+                              // Page is not completed so that next scan processes it again.
+                              return;
+                           }
+                           try{
+                              tryIndexFile(summary);
+                           } finally {
+                              checkpoint.taskCompleted(pageHandle);
+                           }
+                           saveCheckpoint(checkpoint, false);
+                        }
+                     });
+                  }
+                  saveCheckpoint(checkpoint, false);
+               }
+            });
+            // Last scan time should not be recorded before every picked file has been handed to bulk processor.
+            tasks.awaitCompletion();
+            if (isScanCancelled()){
+               throw new InterruptedException("Scan has been cancelled");
             }
+         } catch (Exception e){
+            // Keep track of progress so that next scan resumes from there. Pages of cancelled
+            // tasks never complete : next scan starts over from a checkpoint of watermarks.
+            pendingCheckpoint = checkpoint.resume();
+            saveCheckpoint(checkpoint, true);
+            throw e;
+         }
+         if (logger.isDebugEnabled()){
+            logger.debug("Scan of bucket {} issued {} S3 requests", feedDefinition.getBucket(),
+                  s3.getRequestCount() - requestsBefore);
          }
+         if (skippedObjects.get() > 0){
+            logger.info("Skipped {} unchanged objects of bucket {}, avoiding download of {} bytes",
+                  skippedObjects.get(), feedDefinition.getBucket(), skippedBytes.get());
+         }
+         // Inventory reports ignore objects created after them : their documents should not be deleted.
+         listedBefore = feedDefinition.getInventoryBucket() != null ? listingTime : null;
          
-         return summaries.getLastScanTime();
+         // Inventory reports give objects as they were at report creation time.
+         return Math.min(checkpoint.getScanTime(), listingTime);
       }
-      
-      /** Retrieve the ids of files already present into index. */
-      private List<String> getAlreadyIndexFileIds(){
-         List<String> fileIds = new ArrayList<String>();
-         // TODO : Should be later optimized for only retrieving ids and getting
-         // over the 5000 hits limitation.
-         SearchResponse response = client
-               .prepareSearch(indexName)
-               .setSearchType(SearchType.QUERY_AND_FETCH)
-               .setTypes(typeName)
-               .setFrom(0)
-               .setSize(5000)
-               .execute().actionGet();
-         if (response.getHits() != null && response.getHits().getHits() != null){
-            for (SearchHit hit : response.getHits().getHits()){
-               fileIds.add(hit.getId());
-            }
+
+      @Override
+      public void deleteFile(String key) throws Exception{
+         esDelete(indexName, typeName, S3RiverUtil.buildIndexIdFromS3Key(key));
+      }
+
+      /** Index an Amazon S3 file, logging failure : file is going to be picked again by next scan. */
+      private void tryIndexFile(S3ObjectSummary summary){
+         try{
+            indexFile(summary);
+         } catch (Exception e) {
+            logger.warn("Can not index " + summary.getKey() + " : " + e.getMessage());
+            stats.failed.inc();
          }
-         return fileIds;
       }
-      
+
       /** Index an Amazon S3 file by retrieving its content and building the suitable Json content. */
-      private String indexFile(S3ObjectSummary summary){
+      @Override
+      public void indexFile(S3ObjectSummary summary) throws Exception{
          if (logger.isDebugEnabled()){
             logger.debug("Trying to index '{}'", summary.getKey());
          }
          
-         try{
-            // Build a unique id from S3 unique summary key.
-            String fileId = buildIndexIdFromS3Key(summary.getKey());
+         // Build a unique id from S3 unique summary key.
+         String fileId = S3RiverUtil.buildIndexIdFromS3Key(summary.getKey());
 
-            if (feedDefinition.isJsonSupport()){
-               esIndex(indexName, typeName, summary.getKey(), s3.getContent(summary));
+         if (feedDefinition.isJsonSupport()){
+            // Json documents are indexed as is : their whole content is needed, within size limit.
+            ByteSizeValue extractionMaxSize = feedDefinition.getExtractionMaxSize();
+            if (extractionMaxSize != null && summary.getSize() > extractionMaxSize.bytes()){
+               logger.warn("Can not index Json file {} : its size {} exceeds extraction_max_size {}",
+                     summary.getKey(), new ByteSizeValue(summary.getSize()), extractionMaxSize);
+               stats.failed.inc();
+               return;
+            }
+            S3ObjectContent objectContent = s3.getObjectContent(summary);
+            byte[] content;
+            try{
+               content = Streams.copyToByteArray(objectContent.getContent());
+            } finally {
+               objectContent.close();
+            }
+            stats.downloaded.inc();
+            stats.downloadedBytes.inc(content.length);
+            esIndex(indexName, typeName, summary.getKey(), content, summary.getLastModified());
+         } else {
+            // Compute number of chars to index.
+            // see https://github.com/lbroudoux/es-amazon-s3-river/issues/36
+            int indexedChars = 100000;
+            long maxBytes = -1;
+            if (feedDefinition.getIndexedCharsRatio() > 0) {
+               indexedChars = (int) Math.min(Integer.MAX_VALUE,
+                     Math.round(summary.getSize() * feedDefinition.getIndexedCharsRatio()));
             } else {
-               byte[] fileContent = s3.getContent(summary);
-
-               if (fileContent != null) {
-                  // Compute number of chars to index.
-                  // see https://github.com/lbroudoux/es-amazon-s3-river/issues/36
-                  int indexedChars = 100000;
-                  if (feedDefinition.getIndexedCharsRatio() > 0) {
-                     indexedChars = (int) Math.round(fileContent.length * feedDefinition.getIndexedCharsRatio());
-                  }
-
-                  // Parse content using Tika directly.
-                  Metadata fileMetadata = new Metadata();
-                  String parsedContent = TikaHolder.tika().parseToString(
-                        new BytesStreamInput(fileContent), fileMetadata, indexedChars);
+               // Only the first bytes are needed for formats that can be parsed from a prefix.
+               maxBytes = S3RiverUtil.computeRangeBytes(summary.getKey(), indexedChars);
+            }
 
-                  // Store Tika metadatas into a map.
-                  Map<String, Object> fileMetadataMap = new HashMap<String, Object>();
-                  for (String key : fileMetadata.names()) {
-                     fileMetadataMap.put(key, fileMetadata.get(key));
-                  }
+            // Files parsers would need too much memory for are not downloaded at all.
+            ByteSizeValue extractionMaxSize = feedDefinition.getExtractionMaxSize();
+            if (maxBytes <= 0 && extractionMaxSize != null && summary.getSize() > extractionMaxSize.bytes()){
+               indexExtractionFailure(summary, fileId, "File size " + new ByteSizeValue(summary.getSize())
+                     + " exceeds extraction_max_size " + extractionMaxSize);
+               return;
+            }
 
-                  esIndex(indexName, typeName, fileId,
-                        jsonBuilder()
-                              .startObject()
-                                 .field(S3RiverUtil.DOC_FIELD_TITLE, summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1))
-                                 .field(S3RiverUtil.DOC_FIELD_MODIFIED_DATE, summary.getLastModified().getTime())
-                                 .field(S3RiverUtil.DOC_FIELD_SOURCE_URL, s3.getDownloadUrl(summary, feedDefinition))
-                                 .field(S3RiverUtil.DOC_FIELD_METADATA, s3.getS3UserMetadata(summary.getKey()))
-                                 .startObject("file")
-                                    .field("_name", summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1))
-                                    .field("title", summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1))
-                                    .field("file", parsedContent)
-                                    .field("metadata", fileMetadataMap)
-                                 .endObject()
-                              .endObject()
-                  );
-                  return fileId;
+            // Large container files are staged on disk so that parsers access them randomly from there.
+            // Files downloaded in concurrent parts are staged too, within the same disk budget.
+            File staged = null;
+            if (maxBytes <= 0 && ((stagingArea.accept(summary.getSize()) && S3RiverUtil.needsRandomAccess(summary.getKey()))
+                  || (s3.isParallelDownload(summary) && stagingArea.fits(summary.getSize())))){
+               staged = stagingArea.reserve(summary.getSize());
+            }
+            try{
+               S3ObjectContent objectContent;
+               if (staged != null){
+                  ObjectMetadata metadata = s3.download(summary, staged);
+                  objectContent = new S3ObjectContent(summary.getKey(), TikaInputStream.get(staged), metadata);
+               } else {
+                  // Content and metadata come from the same GET request.
+                  objectContent = s3.getObjectContent(summary, maxBytes);
+               }
+               stats.downloaded.inc();
+               stats.downloadedBytes.inc(objectContent.getMetadata().getContentLength());
+               indexFileContent(summary, fileId, objectContent, indexedChars);
+            } catch (ExtractionLimitException ele){
+               indexExtractionFailure(summary, fileId, ele.getMessage());
+            } finally {
+               if (staged != null){
+                  stagingArea.release(staged, summary.getSize());
                }
             }
-         } catch (Exception e) {
-            logger.warn("Can not index " + summary.getKey() + " : " + e.getMessage());
+         }
+      }
+
+      /** Parse content of an Amazon S3 file and index it with its metadata. */
+      private String indexFileContent(S3ObjectSummary summary, String fileId, S3ObjectContent objectContent,
+            int indexedChars) throws Exception{
+         InputStream fileContent = objectContent.getContent();
+
+         if (fileContent != null) {
+
+            // Extract content streaming from S3 or staged file, using the fast path of simple
+            // formats if any. Extractors close the stream.
+            Metadata fileMetadata = new Metadata();
+            long extractionStart = System.currentTimeMillis();
+            String parsedContent = extractionExecutor.extract(
+                  extractors.get(objectContent.getContentType(), summary.getKey()), fileContent, fileMetadata, indexedChars);
+            stats.extractLatency.record(System.currentTimeMillis() - extractionStart);
+            stats.extracted.inc();
+
+            // Store Tika metadatas into a map.
+            Map<String, Object> fileMetadataMap = new HashMap<String, Object>();
+            for (String key : fileMetadata.names()) {
+               fileMetadataMap.put(key, fileMetadata.get(key));
+            }
+
+            esIndex(indexName, typeName, fileId,
+                  startFileDocument(summary)
+                        .field(S3RiverUtil.DOC_FIELD_METADATA, objectContent.getUserMetadata())
+                        .startObject("file")
+                           .field("_name", summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1))
+                           .field("title", summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1))
+                           .field("file", parsedContent)
+                           .field("metadata", fileMetadataMap)
+                        .endObject()
+                     .endObject(),
+                  summary.getLastModified()
+            );
+            return fileId;
          }
          return null;
       }
       
-      /** Build a unique id from S3 unique summary key. */
-      private String buildIndexIdFromS3Key(String key){
-         return key.replace('/', '-');
+      /**
+       * Index an Amazon S3 file whose content cannot be extracted within limits, with the reason
+       * why. As etag and size are recorded, the file won't be tried again until it changes.
+       */
+      private void indexExtractionFailure(S3ObjectSummary summary, String fileId, String reason) throws Exception{
+         logger.warn("Can not extract content of {} : {}. Indexing it without content", summary.getKey(), reason);
+         stats.failed.inc();
+         if (extractionExecutor.getAbandonedCount() > 0){
+            logger.warn("{} runaway extractions are still running", extractionExecutor.getAbandonedCount());
+         }
+         esIndex(indexName, typeName, fileId,
+               startFileDocument(summary)
+                     .field(S3RiverUtil.DOC_FIELD_EXTRACTION_ERROR, reason)
+                  .endObject(),
+               summary.getLastModified()
+         );
       }
-      
+
+      /** Start the Json document of an Amazon S3 file with the fields every file has. */
+      private XContentBuilder startFileDocument(S3ObjectSummary summary) throws IOException{
+         XContentBuilder xb = jsonBuilder()
+               .startObject()
+                  .field(S3RiverUtil.DOC_FIELD_TITLE, summary.getKey().substring(summary.getKey().lastIndexOf('/') + 1))
+                  .field(S3RiverUtil.DOC_FIELD_MODIFIED_DATE, summary.getLastModified().getTime())
+                  .field(S3RiverUtil.DOC_FIELD_SOURCE_URL, s3.getDownloadUrl(summary, feedDefinition))
+                  .field(S3RiverUtil.DOC_FIELD_ETAG, summary.getETag())
+                  .field(S3RiverUtil.DOC_FIELD_SIZE, summary.getSize());
+         if (feedDefinition.isStoreIndexedDate()){
+            // Freshness of a document is then the difference with its modification date.
+            xb.field(S3RiverUtil.DOC_FIELD_INDEXED_DATE, System.currentTimeMillis());
+         }
+         return xb;
+      }
+
       /** Update river last changes id value.*/
-      private void updateRiver(String lastScanTimeField, Long lastScanTime) throws Exception{
+      private void updateRiver(Long lastScanTime) throws Exception{
          if (logger.isDebugEnabled()){
             logger.debug("Updating lastScanTimeField: {}", lastScanTime);
          }
@@ -560,41 +1574,12 @@ public class S3River extends AbstractRiverComponent implements River{
             .startObject()
                .startObject("amazon-s3")
                   .field("feedname", feedDefinition.getFeedname())
-                  .field(lastScanTimeField, lastScanTime)
+                  .field(LAST_SCAN_TIME_FIELD, lastScanTime)
                .endObject()
             .endObject();
-         esIndex("_river", riverName.name(), lastScanTimeField, xb);
-      }
-
-      /** Add to bulk an IndexRequest. */
-      private void esIndex(String index, String type, String id, XContentBuilder xb) throws Exception{
-         if (logger.isDebugEnabled()){
-            logger.debug("Indexing in ES " + index + ", " + type + ", " + id);
-         }
-         if (logger.isTraceEnabled()){
-            logger.trace("Json indexed : {}", xb.string());
-         }
-         bulkProcessor.add(client.prepareIndex(index, type, id).setSource(xb).request());
-      }
-
-      /** Add to bulk an IndexRequest. */
-      private void esIndex(String index, String type, String id, byte[] json) throws Exception{
-         if (logger.isDebugEnabled()){
-            logger.debug("Indexing in ES " + index + ", " + type + ", " + id);
-         }
-         if (logger.isTraceEnabled()){
-            logger.trace("Json indexed : {}", json);
-         }
-         bulkProcessor.add(client.prepareIndex(index, type, id).setSource(json).request());
+         esIndex("_river", riverName.name(), lastScanTimeId, xb);
       }
 
-      /** Add to bulk a DeleteRequest. */
-      private void esDelete(String index, String type, String id) throws Exception{
-         if (logger.isDebugEnabled()){
-            logger.debug("Deleting from ES " + index + ", " + type + ", " + id);
-         }
-         bulkProcessor.add(client.prepareDelete(index, type, id).request());
-      }
    }
 
    private enum RiverStatus {
@@ -19,6 +19,9 @@
 package com.github.lbroudoux.elasticsearch.river.s3.river;
 
 import java.util.List;
+
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 /**
  * A definition bean wrapping information of river feed settings.
  * @author laurent
@@ -32,11 +35,27 @@ public class S3RiverFeedDefinition{
    private int updateRate;
    private List<String> includes;
    private List<String> excludes;
+   private S3KeyMatcher keyMatcher;
    private String accessKey;
    private String secretKey;
    private boolean useIAMRoleForEC2;
    private boolean jsonSupport;
    private double indexedCharsRatio = 0;
+   private int concurrency = 1;
+   private boolean skipUnchanged = true;
+   private boolean storeIndexedDate = false;
+   private int listingConcurrency = 1;
+   private List<String> listingSplitPoints;
+   private String eventQueueUrl;
+   private String inventoryBucket;
+   private String inventoryPrefix;
+   private ByteSizeValue downloadPartSize;
+   private int downloadParallelism = 1;
+   private String stagingDirectory;
+   private ByteSizeValue stagingThreshold;
+   private ByteSizeValue stagingBudget;
+   private TimeValue extractionTimeout;
+   private ByteSizeValue extractionMaxSize;
    
    public S3RiverFeedDefinition(String feedname, String bucket, String pathPrefix, String downloadHost, int updateRate, 
          List<String> includes, List<String> excludes, String accessKey, String secretKey, boolean useIAMRoleForEC2,
@@ -48,6 +67,7 @@ public class S3RiverFeedDefinition{
       this.updateRate = updateRate;
       this.includes = includes;
       this.excludes = excludes;
+      this.keyMatcher = S3KeyMatcher.compile(includes, excludes);
       this.accessKey = accessKey;
       this.secretKey = secretKey;
       this.useIAMRoleForEC2 = useIAMRoleForEC2;
@@ -95,6 +115,7 @@ public class S3RiverFeedDefinition{
    }
    public void setIncludes(List<String> includes) {
       this.includes = includes;
+      this.keyMatcher = S3KeyMatcher.compile(includes, excludes);
    }
 
    public List<String> getExcludes() {
@@ -102,6 +123,12 @@ public class S3RiverFeedDefinition{
    }
    public void setExcludes(List<String> excludes) {
       this.excludes = excludes;
+      this.keyMatcher = S3KeyMatcher.compile(includes, excludes);
+   }
+
+   /** @return Includes and excludes rules compiled into a matcher */
+   public S3KeyMatcher getKeyMatcher() {
+      return keyMatcher;
    }
 
    public String getAccessKey() {
@@ -130,4 +157,109 @@ public class S3RiverFeedDefinition{
    public void setIndexedCharsRatio(double indexedCharsRatio) {
       this.indexedCharsRatio = indexedCharsRatio;
    }
+
+   public int getConcurrency() {
+      return concurrency;
+   }
+   public void setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+   }
+
+   public boolean isSkipUnchanged() {
+      return skipUnchanged;
+   }
+   public void setSkipUnchanged(boolean skipUnchanged) {
+      this.skipUnchanged = skipUnchanged;
+   }
+
+   public boolean isStoreIndexedDate() {
+      return storeIndexedDate;
+   }
+   public void setStoreIndexedDate(boolean storeIndexedDate) {
+      this.storeIndexedDate = storeIndexedDate;
+   }
+
+   public int getListingConcurrency() {
+      return listingConcurrency;
+   }
+   public void setListingConcurrency(int listingConcurrency) {
+      this.listingConcurrency = listingConcurrency;
+   }
+
+   public List<String> getListingSplitPoints() {
+      return listingSplitPoints;
+   }
+   public void setListingSplitPoints(List<String> listingSplitPoints) {
+      this.listingSplitPoints = listingSplitPoints;
+   }
+
+   public String getEventQueueUrl() {
+      return eventQueueUrl;
+   }
+   public void setEventQueueUrl(String eventQueueUrl) {
+      this.eventQueueUrl = eventQueueUrl;
+   }
+
+   public String getInventoryBucket() {
+      return inventoryBucket;
+   }
+   public void setInventoryBucket(String inventoryBucket) {
+      this.inventoryBucket = inventoryBucket;
+   }
+
+   public String getInventoryPrefix() {
+      return inventoryPrefix;
+   }
+   public void setInventoryPrefix(String inventoryPrefix) {
+      this.inventoryPrefix = inventoryPrefix;
+   }
+
+   public ByteSizeValue getDownloadPartSize() {
+      return downloadPartSize;
+   }
+   public void setDownloadPartSize(ByteSizeValue downloadPartSize) {
+      this.downloadPartSize = downloadPartSize;
+   }
+
+   public int getDownloadParallelism() {
+      return downloadParallelism;
+   }
+   public void setDownloadParallelism(int downloadParallelism) {
+      this.downloadParallelism = downloadParallelism;
+   }
+
+   public String getStagingDirectory() {
+      return stagingDirectory;
+   }
+   public void setStagingDirectory(String stagingDirectory) {
+      this.stagingDirectory = stagingDirectory;
+   }
+
+   public ByteSizeValue getStagingThreshold() {
+      return stagingThreshold;
+   }
+   public void setStagingThreshold(ByteSizeValue stagingThreshold) {
+      this.stagingThreshold = stagingThreshold;
+   }
+
+   public ByteSizeValue getStagingBudget() {
+      return stagingBudget;
+   }
+   public void setStagingBudget(ByteSizeValue stagingBudget) {
+      this.stagingBudget = stagingBudget;
+   }
+
+   public TimeValue getExtractionTimeout() {
+      return extractionTimeout;
+   }
+   public void setExtractionTimeout(TimeValue extractionTimeout) {
+      this.extractionTimeout = extractionTimeout;
+   }
+
+   public ByteSizeValue getExtractionMaxSize() {
+      return extractionMaxSize;
+   }
+   public void setExtractionMaxSize(ByteSizeValue extractionMaxSize) {
+      this.extractionMaxSize = extractionMaxSize;
+   }
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+/**
+ * Node level registry of the Amazon S3 rivers running on this node, allowing
+ * REST actions to reach them directly.
+ * @author laurent
+ */
+public class S3RiverRegistry{
+
+   private final ConcurrentMap<String, S3River> rivers = new ConcurrentHashMap<String, S3River>();
+
+
+   /**
+    * Register a river running on this node.
+    * @param riverName The name of river
+    * @param river The river
+    */
+   public void register(String riverName, S3River river){
+      rivers.put(riverName, river);
+   }
+
+   /**
+    * Unregister a river, unless it has already been replaced by another instance.
+    * @param riverName The name of river
+    * @param river The river
+    */
+   public void unregister(String riverName, S3River river){
+      rivers.remove(riverName, river);
+   }
+
+   /**
+    * Get a river running on this node.
+    * @param riverName The name of river
+    * @return The river or null if it does not run on this node
+    */
+   public S3River get(String riverName){
+      return rivers.get(riverName);
+   }
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import org.elasticsearch.common.inject.AbstractModule;
+/**
+ * Node level module sharing a single registry between rivers and REST actions.
+ * @author laurent
+ */
+public class S3RiverRegistryModule extends AbstractModule{
+
+   @Override
+   protected void configure(){
+      bind(S3RiverRegistry.class).asEagerSingleton();
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+/**
+ * Ingestion statistics of a river since it started. Counters and histograms are
+ * updated concurrently by scanner and workers without any locking.
+ * @author laurent
+ */
+public class S3RiverStats{
+
+   /** Objects found by listings, before filtering on includes/excludes. */
+   final CounterMetric listed = new CounterMetric();
+   /** Objects excluded by includes/excludes. */
+   final CounterMetric filtered = new CounterMetric();
+   /** Objects modified since last scan or notified by events. */
+   final CounterMetric picked = new CounterMetric();
+   /** Picked objects whose ETag and size are the indexed ones. */
+   final CounterMetric skipped = new CounterMetric();
+   final CounterMetric downloaded = new CounterMetric();
+   final CounterMetric downloadedBytes = new CounterMetric();
+   final CounterMetric extracted = new CounterMetric();
+   final CounterMetric indexed = new CounterMetric();
+   final CounterMetric deleted = new CounterMetric();
+   final CounterMetric failed = new CounterMetric();
+
+   final LatencyHistogram extractLatency = new LatencyHistogram();
+   final LatencyHistogram bulkLatency = new LatencyHistogram();
+   /** Time from S3 last modification of files to acknowledgement of their indexing. */
+   final LatencyHistogram freshness = new LatencyHistogram();
+
+   final MeanMetric scans = new MeanMetric();
+   private volatile long lastScanMillis = -1;
+   private volatile long scanStartedAt = -1;
+
+
+   /** Record the start of a scan. */
+   void scanStarted(){
+      scanStartedAt = System.currentTimeMillis();
+   }
+
+   /** Record the end of the scan previously started. */
+   void scanEnded(){
+      long startedAt = scanStartedAt;
+      if (startedAt > 0){
+         lastScanMillis = System.currentTimeMillis() - startedAt;
+         scans.inc(lastScanMillis);
+         scanStartedAt = -1;
+      }
+   }
+
+   /**
+    * Write counters and histograms into builder.
+    * @param builder The builder to write to
+    * @param listLatency Latency of listing requests
+    * @param getLatency Latency of object GET requests
+    */
+   public void toXContent(XContentBuilder builder, LatencyHistogram listLatency, LatencyHistogram getLatency) throws IOException{
+      builder.startObject("objects")
+            .field("listed", listed.count())
+            .field("filtered", filtered.count())
+            .field("picked", picked.count())
+            .field("skipped", skipped.count())
+            .field("downloaded", downloaded.count())
+            .field("extracted", extracted.count())
+            .field("indexed", indexed.count())
+            .field("deleted", deleted.count())
+            .field("failed", failed.count())
+         .endObject();
+      builder.field("downloaded_bytes", downloadedBytes.count());
+      builder.startObject("latency");
+      listLatency.toXContent(builder, "list");
+      getLatency.toXContent(builder, "get");
+      extractLatency.toXContent(builder, "extract");
+      bulkLatency.toXContent(builder, "bulk");
+      builder.endObject();
+      freshness.toXContent(builder, "freshness");
+      long startedAt = scanStartedAt;
+      builder.startObject("scans")
+            .field("count", scans.count())
+            .field("mean_ms", scans.mean())
+            .field("last_ms", lastScanMillis)
+            .field("running_ms", startedAt > 0 ? System.currentTimeMillis() - startedAt : -1)
+         .endObject();
+   }
+}
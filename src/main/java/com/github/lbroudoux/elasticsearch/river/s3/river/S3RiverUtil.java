@@ -37,6 +37,28 @@ public class S3RiverUtil{
    public static final String DOC_FIELD_MODIFIED_DATE = "modifiedDate";
    public static final String DOC_FIELD_SOURCE_URL = "source_url";
    public static final String DOC_FIELD_METADATA = "metadata";
+   public static final String DOC_FIELD_ETAG = "etag";
+   public static final String DOC_FIELD_SIZE = "size";
+   public static final String DOC_FIELD_EXTRACTION_ERROR = "extraction_error";
+   public static final String DOC_FIELD_INDEXED_DATE = "indexedDate";
+
+   /** Maximum number of bytes needed for encoding a character (UTF-8). */
+   private static final int MAX_BYTES_PER_CHAR = 4;
+
+   /** Extensions of plain text formats, where n characters are found into the first 4*n bytes. */
+   private static final Set<String> PLAIN_TEXT_EXTENSIONS = new HashSet<String>(
+         Arrays.asList("txt", "text", "log", "csv", "tsv", "json", "md"));
+
+   /** Extensions of markup formats that can be parsed from a truncated content. */
+   private static final Set<String> MARKUP_EXTENSIONS = new HashSet<String>(Arrays.asList("html", "htm"));
+
+   /** Markup formats need more bytes per indexed character as markup itself is not indexed. */
+   private static final int MARKUP_OVERHEAD = 4;
+
+   /** Extensions of container formats that parsers need to access randomly. */
+   private static final Set<String> RANDOM_ACCESS_EXTENSIONS = new HashSet<String>(Arrays.asList(
+         "pdf", "zip", "jar", "epub", "doc", "xls", "ppt", "msg", "docx", "docm", "xlsx", "xlsm", "pptx", "pptm",
+         "odt", "ods", "odp"));
    
    /**
     * Build mapping description for Amazon S3 files.
@@ -51,6 +73,10 @@ public class S3RiverUtil{
             .startObject(DOC_FIELD_MODIFIED_DATE).field("type", "date").endObject()
             .startObject(DOC_FIELD_SOURCE_URL).field("type", "string").endObject()
             .startObject(DOC_FIELD_METADATA).field("type", "object").endObject()
+            .startObject(DOC_FIELD_ETAG).field("type", "string").field("index", "not_analyzed").endObject()
+            .startObject(DOC_FIELD_SIZE).field("type", "long").endObject()
+            .startObject(DOC_FIELD_EXTRACTION_ERROR).field("type", "string").endObject()
+            .startObject(DOC_FIELD_INDEXED_DATE).field("type", "date").endObject()
             .startObject("file")
                .startObject("properties")
                   .startObject("title").field("type", "string").field("store", "yes").endObject()
@@ -95,40 +121,75 @@ public class S3RiverUtil{
 
    /**
     * Tells if an Aamzon S3 file is indexable from its key (file name), based on includes
-    * and excludes rules. 
+    * and excludes rules. This compiles rules at each call : prefer using a {@link S3KeyMatcher}
+    * when checking many keys against the same rules.
     * @return true if file should be indexed, false otherwise
     */
    public static boolean isIndexable(String key, List<String> includes, List<String> excludes){
-      // If no rules specified, we index everything !
-      if ((includes == null && excludes == null) 
-            || (includes.isEmpty() && excludes.isEmpty())){
-         return true;
+      return S3KeyMatcher.compile(includes, excludes).isIndexable(key);
+   }
+
+   /**
+    * Build a unique document id from S3 unique object key.
+    * @param key The key of S3 object
+    * @return The id of document indexing this object
+    */
+   public static String buildIndexIdFromS3Key(String key){
+      return key.replace('/', '-');
+   }
+
+   /**
+    * Tells if an Amazon S3 object is unchanged regarding an already indexed document.
+    * Object is unchanged if both its ETag and size are the ones recorded into document.
+    * @param etag The ETag of S3 object
+    * @param size The size of S3 object
+    * @param source The source of indexed document (may be null if not indexed)
+    * @return true if object has not changed since it has been indexed
+    */
+   public static boolean isUnchanged(String etag, long size, Map<String, Object> source){
+      if (etag == null || source == null){
+         return false;
       }
-      
-      // Exclude rules : we know that whatever includes rules are, we should exclude matching files.
-      if (excludes != null){
-         for (String exclude : excludes){
-            String regex = exclude.replace("?", ".?").replace("*", ".*?");
-            if (key.matches(regex)){
-               return false;
-            }
-         }
+      Object indexedEtag = source.get(DOC_FIELD_ETAG);
+      Object indexedSize = source.get(DOC_FIELD_SIZE);
+      return etag.equals(indexedEtag) && indexedSize instanceof Number && ((Number) indexedSize).longValue() == size;
+   }
+
+   /**
+    * Compute the number of bytes to download from an Amazon S3 object for extracting its
+    * first characters. This is only possible for formats that can be parsed from a prefix of
+    * their content (plain text, CSV, JSON, HTML...), not for container formats (PDF, OOXML...).
+    * @param key The key of S3 object
+    * @param indexedChars The number of characters to extract
+    * @return The number of bytes to download, or -1 if whole object must be downloaded
+    */
+   public static long computeRangeBytes(String key, int indexedChars){
+      int dot = key.lastIndexOf('.');
+      if (indexedChars <= 0 || dot < 0 || dot < key.lastIndexOf('/')){
+         return -1;
       }
-      
-      // Include rules : we should add document if it match include rules.
-      if (includes == null || includes.isEmpty()){
-         return true;
+      String extension = key.substring(dot + 1).toLowerCase(Locale.ROOT);
+      if (PLAIN_TEXT_EXTENSIONS.contains(extension)){
+         return (long) indexedChars * MAX_BYTES_PER_CHAR;
       }
-      if (includes != null){
-         for (String include : includes){
-            String regex = include.replace("?", ".?").replace("*", ".*?");
-            if (key.matches(regex)){
-               return true;
-            }
-         }
+      if (MARKUP_EXTENSIONS.contains(extension)){
+         return (long) indexedChars * MAX_BYTES_PER_CHAR * MARKUP_OVERHEAD;
       }
-      
-      return false;
+      return -1;
+   }
+
+   /**
+    * Tell if an Amazon S3 object is of a container format that parsers need to access
+    * randomly, holding it on heap or on disk.
+    * @param key The key of S3 object
+    * @return true if object format needs random access
+    */
+   public static boolean needsRandomAccess(String key){
+      int dot = key.lastIndexOf('.');
+      if (dot < 0 || dot < key.lastIndexOf('/')){
+         return false;
+      }
+      return RANDOM_ACCESS_EXTENSIONS.contains(key.substring(dot + 1).toLowerCase(Locale.ROOT));
    }
 
    /**
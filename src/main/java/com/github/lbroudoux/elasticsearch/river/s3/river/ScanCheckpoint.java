@@ -0,0 +1,207 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+/**
+ * Progress of a bucket scan, allowing a restarted river to resume an interrupted scan
+ * instead of downloading everything again. Listing partitions are processed in key order,
+ * so progress is tracked per partition as a watermark : the last key of the latest page
+ * whose picked objects, as well as those of every previous page, have all been handed
+ * to bulk processor. Pages may complete out of order, watermark only moves over
+ * contiguous completed pages.
+ * @author laurent
+ */
+public class ScanCheckpoint{
+
+   private final Long lastScanTime;
+   private final long scanTime;
+
+   /** Watermarks this checkpoint has been resumed from, by partition id. */
+   private final Map<String, String> resumedKeys;
+
+   /** Current watermarks by partition id. */
+   private final Map<String, String> keys = new HashMap<String, String>();
+
+   /** Pages not completed yet by partition id, in listing order. */
+   private final Map<String, LinkedList<Page>> pendingPages = new HashMap<String, LinkedList<Page>>();
+
+   private boolean dirty = false;
+
+
+   /**
+    * Create a checkpoint for a new scan.
+    * @param lastScanTime The modification date filter of scan (may be null for a first scan)
+    * @param scanTime The scan time to record once scan will be completed
+    */
+   public ScanCheckpoint(Long lastScanTime, long scanTime){
+      this(lastScanTime, scanTime, new HashMap<String, String>());
+   }
+
+   private ScanCheckpoint(Long lastScanTime, long scanTime, Map<String, String> resumedKeys){
+      this.lastScanTime = lastScanTime;
+      this.scanTime = scanTime;
+      this.resumedKeys = resumedKeys;
+      this.keys.putAll(resumedKeys);
+   }
+
+   /** @return The modification date filter of scan */
+   public Long getLastScanTime(){
+      return lastScanTime;
+   }
+
+   /** @return The scan time to record once scan will be completed */
+   public long getScanTime(){
+      return scanTime;
+   }
+
+   /**
+    * Tell if an object has already been processed before this checkpoint was resumed.
+    * @param partition The id of listing partition
+    * @param key The key of object
+    * @return true if object has been handed to bulk processor by a previous run
+    */
+   public boolean isAlreadyProcessed(String partition, String key){
+      String resumedKey = resumedKeys.get(partition);
+      return resumedKey != null && key.compareTo(resumedKey) <= 0;
+   }
+
+   /**
+    * Register a new listing page of a partition. Pages must be registered in listing order.
+    * @param partition The id of listing partition
+    * @param lastKey The last key of page
+    * @param tasks The number of objects of page to be processed
+    * @return A handle to be given to {@link #taskCompleted(Object)} once each object is processed
+    */
+   public synchronized Object pageStarted(String partition, String lastKey, int tasks){
+      LinkedList<Page> pages = pendingPages.get(partition);
+      if (pages == null){
+         pages = new LinkedList<Page>();
+         pendingPages.put(partition, pages);
+      }
+      Page page = new Page(partition, lastKey, tasks);
+      pages.add(page);
+      advance(pages);
+      return page;
+   }
+
+   /**
+    * Record an object of page as processed.
+    * @param handle The handle of page, as returned by {@link #pageStarted(String, String, int)}
+    */
+   public synchronized void taskCompleted(Object handle){
+      Page page = (Page) handle;
+      page.pending--;
+      advance(pendingPages.get(page.partition));
+   }
+
+   /**
+    * Build a checkpoint resuming this interrupted scan from its current watermarks. Pages
+    * still pending are dropped, so that their objects are processed again by resumed scan.
+    * @return A new checkpoint for the same scan
+    */
+   public synchronized ScanCheckpoint resume(){
+      return new ScanCheckpoint(lastScanTime, scanTime, new HashMap<String, String>(keys));
+   }
+
+   /** @return The current watermark of a partition, may be null */
+   public synchronized String getKey(String partition){
+      return keys.get(partition);
+   }
+
+   /** @return true if watermarks have moved since last call to {@link #toXContent(XContentBuilder)} */
+   public synchronized boolean isDirty(){
+      return dirty;
+   }
+
+   private void advance(LinkedList<Page> pages){
+      while (!pages.isEmpty() && pages.getFirst().pending <= 0){
+         Page page = pages.removeFirst();
+         if (page.lastKey != null){
+            keys.put(page.partition, page.lastKey);
+            dirty = true;
+         }
+      }
+   }
+
+   /**
+    * Write this checkpoint fields into builder, clearing the dirty flag.
+    * @param builder The builder to write to, within an opened object
+    * @return The builder
+    */
+   public synchronized XContentBuilder toXContent(XContentBuilder builder) throws IOException{
+      builder.field("lastScanTime", lastScanTime);
+      builder.field("scanTime", scanTime);
+      builder.startArray("partitions");
+      for (Map.Entry<String, String> entry : keys.entrySet()){
+         builder.startObject().field("id", entry.getKey()).field("key", entry.getValue()).endObject();
+      }
+      builder.endArray();
+      dirty = false;
+      return builder;
+   }
+
+   /**
+    * Build a checkpoint resuming a scan from fields written using {@link #toXContent(XContentBuilder)}.
+    * @param source The map of checkpoint fields
+    * @return The resumed checkpoint or null if source is not a valid checkpoint
+    */
+   @SuppressWarnings("unchecked")
+   public static ScanCheckpoint fromMap(Map<String, Object> source){
+      if (source == null || !(source.get("scanTime") instanceof Number)){
+         return null;
+      }
+      Long lastScanTime = null;
+      if (source.get("lastScanTime") instanceof Number){
+         lastScanTime = ((Number) source.get("lastScanTime")).longValue();
+      }
+      Map<String, String> resumedKeys = new HashMap<String, String>();
+      if (source.get("partitions") instanceof List){
+         for (Object partition : (List<Object>) source.get("partitions")){
+            if (partition instanceof Map){
+               Map<String, Object> partitionMap = (Map<String, Object>) partition;
+               if (partitionMap.get("id") != null && partitionMap.get("key") != null){
+                  resumedKeys.put(partitionMap.get("id").toString(), partitionMap.get("key").toString());
+               }
+            }
+         }
+      }
+      return new ScanCheckpoint(lastScanTime, ((Number) source.get("scanTime")).longValue(), resumedKeys);
+   }
+
+   /** A listing page waiting for its objects to be processed. */
+   private static class Page{
+
+      private final String partition;
+      private final String lastKey;
+      private int pending;
+
+      Page(String partition, String lastKey, int pending){
+         this.partition = partition;
+         this.lastKey = lastKey;
+         this.pending = pending;
+      }
+   }
+}
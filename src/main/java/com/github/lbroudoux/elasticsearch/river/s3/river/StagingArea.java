@@ -0,0 +1,141 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+/**
+ * A node-local directory where files are downloaded before being parsed, so that parsers
+ * needing random access (PDF, OOXML, ZIP...) read them from disk instead of holding them
+ * on heap. Total size of staged files is bounded by a disk budget : staging waits for
+ * space to be released when budget is exhausted.
+ * @author laurent
+ */
+public class StagingArea{
+
+   private static final ESLogger logger = Loggers.getLogger(StagingArea.class);
+
+   private static final String PREFIX = "s3river";
+   private static final String SUFFIX = ".staged";
+
+   /** Suffix of files parallel downloads were spooled into before being staged, left by a crash. */
+   private static final String SPOOL_SUFFIX = ".spool";
+
+   private final File directory;
+   private final long threshold;
+   private final long budget;
+
+   private long used = 0;
+
+
+   /**
+    * Create a new staging area.
+    * @param directory The directory holding staged files, created if needed
+    * @param threshold The size above which files are staged
+    * @param budget The maximum total size of staged files
+    */
+   public StagingArea(File directory, long threshold, long budget){
+      this.directory = directory;
+      this.threshold = threshold;
+      this.budget = budget;
+   }
+
+   /**
+    * Tell if a file should be staged. Files larger than the whole budget are never staged.
+    * @param size The size of file
+    * @return true if file size is between threshold and budget
+    */
+   public boolean accept(long size){
+      return size > threshold && size <= budget;
+   }
+
+   /**
+    * Tell if a file can be staged at all, whatever its size compared to threshold.
+    * @param size The size of file
+    * @return true if file size is within budget
+    */
+   public boolean fits(long size){
+      return size <= budget;
+   }
+
+   /**
+    * Reserve space for a file, waiting for enough space to be released if needed.
+    * @param size The size of file to stage
+    * @return A new empty file of staging area
+    * @throws IOException if file cannot be created
+    * @throws InterruptedException if interrupted while waiting for space
+    */
+   public File reserve(long size) throws IOException, InterruptedException{
+      synchronized (this){
+         while (used + size > budget){
+            wait();
+         }
+         used += size;
+      }
+      try{
+         if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()){
+            throw new IOException("Cannot create staging directory " + directory);
+         }
+         return File.createTempFile(PREFIX, SUFFIX, directory);
+      } catch (IOException ioe){
+         release(null, size);
+         throw ioe;
+      }
+   }
+
+   /**
+    * Delete a staged file and release its space.
+    * @param file The staged file, may be null
+    * @param size The size that has been reserved for this file
+    */
+   public void release(File file, long size){
+      if (file != null && file.exists() && !file.delete()){
+         logger.warn("Cannot delete staged file {}", file);
+      }
+      synchronized (this){
+         used -= size;
+         notifyAll();
+      }
+   }
+
+   /** @return The total size reserved by staged files */
+   public synchronized long getUsed(){
+      return used;
+   }
+
+   /** Delete staged and spooled files left by a previous run that has not been able to clean them. */
+   public void purge(){
+      File[] leftovers = directory.listFiles(new FilenameFilter() {
+         @Override
+         public boolean accept(File dir, String name) {
+            return name.startsWith(PREFIX) && (name.endsWith(SUFFIX) || name.endsWith(SPOOL_SUFFIX));
+         }
+      });
+      if (leftovers != null){
+         for (File leftover : leftovers){
+            logger.debug("Deleting leftover staged file {}", leftover);
+            leftover.delete();
+         }
+      }
+   }
+}
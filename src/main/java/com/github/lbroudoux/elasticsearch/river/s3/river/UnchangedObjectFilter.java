@@ -0,0 +1,102 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * Filter of Amazon S3 objects whose ETag and size are the ones already indexed, so that
+ * they are neither downloaded nor parsed again. Indexed ETags and sizes of a page of
+ * objects are retrieved using a single multi get, fetching only these two fields.
+ * @author laurent
+ */
+public class UnchangedObjectFilter{
+
+   private static final ESLogger logger = Loggers.getLogger(UnchangedObjectFilter.class);
+
+   private final Client client;
+   private final String indexName;
+   private final String typeName;
+
+
+   /**
+    * Create a new filter.
+    * @param client The client to query indexed documents with
+    * @param indexName The index holding documents of objects
+    * @param typeName The type of documents of objects
+    */
+   public UnchangedObjectFilter(Client client, String indexName, String typeName){
+      this.client = client;
+      this.indexName = indexName;
+      this.typeName = typeName;
+   }
+
+   /**
+    * Filter out summaries of objects whose ETag and size are the ones already indexed.
+    * If indexed documents cannot be retrieved, every object is kept.
+    * @param summaries The summaries of picked objects
+    * @return The summaries of objects that have changed or are not indexed yet
+    */
+   public List<S3ObjectSummary> filter(List<S3ObjectSummary> summaries){
+      if (summaries.isEmpty()){
+         return summaries;
+      }
+      MultiGetRequestBuilder request = client.prepareMultiGet();
+      FetchSourceContext fetchSource = new FetchSourceContext(
+            new String[]{S3RiverUtil.DOC_FIELD_ETAG, S3RiverUtil.DOC_FIELD_SIZE});
+      for (S3ObjectSummary summary : summaries){
+         request.add(new MultiGetRequest.Item(indexName, typeName, S3RiverUtil.buildIndexIdFromS3Key(summary.getKey()))
+               .fetchSourceContext(fetchSource));
+      }
+      MultiGetResponse response;
+      try{
+         response = request.execute().actionGet();
+      } catch (Exception e){
+         logger.warn("Failed to get indexed ETags, indexing every picked object", e);
+         return summaries;
+      }
+      List<S3ObjectSummary> result = new ArrayList<S3ObjectSummary>(summaries.size());
+      MultiGetItemResponse[] items = response.getResponses();
+      for (int i = 0; i < items.length; i++){
+         S3ObjectSummary summary = summaries.get(i);
+         Map<String, Object> source = null;
+         if (!items[i].isFailed() && items[i].getResponse().isExists()){
+            source = items[i].getResponse().getSourceAsMap();
+         }
+         if (S3RiverUtil.isUnchanged(summary.getETag(), summary.getSize(), source)){
+            logger.debug("Skipping unchanged {}", summary.getKey());
+         } else {
+            result.add(summary);
+         }
+      }
+      return result;
+   }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.metadata.Metadata;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.github.lbroudoux.elasticsearch.river.s3.extractor.ExtractorRegistry;
+import com.github.lbroudoux.elasticsearch.river.s3.extractor.TikaExtractor;
+/**
+ * Benchmark of content extraction throughput per format : Tika format detection and
+ * parsing versus the extractor registered for file content type.
+ * @author laurent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ExtractorBenchmark{
+
+   private static final int INDEXED_CHARS = 100000;
+
+   @Param({"txt", "csv", "html"})
+   public String format;
+
+   private byte[] content;
+   private String contentType;
+   private String key;
+
+   private final TikaExtractor tika = new TikaExtractor();
+   private final ExtractorRegistry registry = ExtractorRegistry.defaultRegistry();
+
+   @Setup
+   public void setUp() throws Exception{
+      Random random = new Random(42);
+      StringBuilder builder = new StringBuilder();
+      if ("html".equals(format)){
+         contentType = "text/html";
+         builder.append("<html><head><title>Benchmark</title></head><body>");
+         while (builder.length() < 64 * 1024){
+            builder.append("<p>Paragraph ").append(random.nextInt()).append(" with <b>some</b> <a href=\"#\">markup</a></p>\n");
+         }
+         builder.append("</body></html>");
+      } else if ("csv".equals(format)){
+         contentType = "text/csv";
+         while (builder.length() < 64 * 1024){
+            builder.append(random.nextInt()).append(",label-").append(random.nextInt(100)).append(",").append(random.nextDouble()).append('\n');
+         }
+      } else {
+         contentType = "text/plain";
+         while (builder.length() < 64 * 1024){
+            builder.append("Line of log ").append(random.nextInt()).append(" with some words in it\n");
+         }
+      }
+      key = "bench/file." + format;
+      content = builder.toString().getBytes("UTF-8");
+   }
+
+   @Benchmark
+   public String tikaAutoDetect() throws Exception{
+      return tika.extract(new ByteArrayInputStream(content), new Metadata(), INDEXED_CHARS);
+   }
+
+   @Benchmark
+   public String registry() throws Exception{
+      return registry.get(contentType, key).extract(new ByteArrayInputStream(content), new Metadata(), INDEXED_CHARS);
+   }
+
+   public static void main(String[] args) throws Exception{
+      new Runner(new OptionsBuilder().include(ExtractorBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3KeyMatcher;
+/**
+ * Benchmark of includes/excludes evaluation over a million synthetic keys : regexes
+ * built at each call versus rules compiled once into a S3KeyMatcher.
+ * @author laurent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class S3KeyMatcherBenchmark{
+
+   private static final String[] EXTENSIONS = {"pdf", "doc", "docx", "xls", "txt", "mkv", "mp4", "zip", "gz", "jpg"};
+
+   private final List<String> includes = Arrays.asList("*.pdf", "*.doc", "*.docx", "*.xls", "*.txt");
+   private final List<String> excludes = Arrays.asList("*.mkv", "*.mp4", "*.zip", "*.gz");
+
+   private String[] keys;
+   private S3KeyMatcher matcher;
+
+   @Setup
+   public void setUp(){
+      Random random = new Random(42);
+      keys = new String[1000000];
+      for (int i = 0; i < keys.length; i++){
+         keys[i] = "Work/folder-" + random.nextInt(1000) + "/file-" + i + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+      }
+      matcher = S3KeyMatcher.compile(includes, excludes);
+   }
+
+   @Benchmark
+   public int regexPerKey(){
+      int indexable = 0;
+      for (String key : keys){
+         if (legacyIsIndexable(key)){
+            indexable++;
+         }
+      }
+      return indexable;
+   }
+
+   @Benchmark
+   public int compiledMatcher(){
+      int indexable = 0;
+      for (String key : keys){
+         if (matcher.isIndexable(key)){
+            indexable++;
+         }
+      }
+      return indexable;
+   }
+
+   /** Rules evaluation as it was done before matcher compilation. */
+   private boolean legacyIsIndexable(String key){
+      for (String exclude : excludes){
+         if (key.matches(exclude.replace("?", ".?").replace("*", ".*?"))){
+            return false;
+         }
+      }
+      for (String include : includes){
+         if (key.matches(include.replace("?", ".?").replace("*", ".*?"))){
+            return true;
+         }
+      }
+      return false;
+   }
+
+   public static void main(String[] args) throws Exception{
+      new Runner(new OptionsBuilder().include(S3KeyMatcherBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.benchmark;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.node.NodeBuilder.nodeBuilder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.connector.InMemoryS3Client;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3RiverUtil;
+import com.github.lbroudoux.elasticsearch.river.s3.river.UnchangedObjectFilter;
+/**
+ * Benchmark of a scan picking again a page of already indexed objects (after a river restart
+ * for example), a few of them having been overwritten : downloading every picked object versus
+ * filtering out unchanged ones first. Bytes downloaded by each rescan, and so avoided bytes,
+ * are printed at setup.
+ * @author laurent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SkipUnchangedBenchmark{
+
+   private static final int OBJECTS = 1000;
+
+   private static final int OBJECT_SIZE = 64 * 1024;
+
+   /** Percentage of objects overwritten since they have been indexed. */
+   @Param({"5"})
+   public int changedPercent;
+
+   private File dataDirectory;
+   private Node node;
+   private InMemoryS3Client s3Client;
+   private UnchangedObjectFilter filter;
+   private List<S3ObjectSummary> pickedSummaries;
+
+   @Setup
+   public void setUp() throws Exception{
+      dataDirectory = File.createTempFile("s3river", "-bench");
+      dataDirectory.delete();
+      node = nodeBuilder().local(true).settings(ImmutableSettings.settingsBuilder()
+            .put("cluster.name", "s3river-bench")
+            .put("path.data", dataDirectory.getPath())
+            .put("http.enabled", false)
+            .put("index.number_of_shards", 1)
+            .put("index.number_of_replicas", 0)).node();
+
+      Random random = new Random(42);
+      s3Client = new InMemoryS3Client("mybucket");
+      for (int i = 0; i < OBJECTS; i++){
+         byte[] content = new byte[OBJECT_SIZE];
+         random.nextBytes(content);
+         s3Client.putObject("Work/file-" + i + ".pdf", content, new Date(1000L));
+      }
+      pickedSummaries = s3Client.listObjects(new ListObjectsRequest("mybucket", "Work/", null, null, OBJECTS))
+            .getObjectSummaries();
+
+      // Index objects as they were at previous scan : overwritten ones had another ETag.
+      BulkRequestBuilder bulk = node.client().prepareBulk().setRefresh(true);
+      for (int i = 0; i < pickedSummaries.size(); i++){
+         S3ObjectSummary summary = pickedSummaries.get(i);
+         String etag = random.nextInt(100) < changedPercent ? "previous-etag" : summary.getETag();
+         bulk.add(node.client().prepareIndex("docs", "doc", S3RiverUtil.buildIndexIdFromS3Key(summary.getKey()))
+               .setSource(jsonBuilder().startObject()
+                     .field(S3RiverUtil.DOC_FIELD_ETAG, etag)
+                     .field(S3RiverUtil.DOC_FIELD_SIZE, summary.getSize())
+                  .endObject()));
+      }
+      bulk.execute().actionGet();
+      filter = new UnchangedObjectFilter(node.client(), "docs", "doc");
+
+      long allBytes = downloadAll();
+      long skippingBytes = skipUnchanged();
+      System.out.println();
+      System.out.println("Bytes downloaded by a rescan of " + OBJECTS + " objects : " + allBytes
+            + " when downloading all, " + skippingBytes + " when skipping unchanged, "
+            + (allBytes - skippingBytes) + " bytes avoided");
+   }
+
+   @TearDown
+   public void tearDown(){
+      node.close();
+      deleteRecursively(dataDirectory);
+   }
+
+   @Benchmark
+   public long downloadAll() throws Exception{
+      return download(pickedSummaries);
+   }
+
+   @Benchmark
+   public long skipUnchanged() throws Exception{
+      return download(filter.filter(pickedSummaries));
+   }
+
+   /** Download content of objects like workers do, returning the number of bytes read. */
+   private long download(List<S3ObjectSummary> summaries) throws Exception{
+      long bytes = 0;
+      byte[] buffer = new byte[8192];
+      for (S3ObjectSummary summary : new ArrayList<S3ObjectSummary>(summaries)){
+         S3Object object = s3Client.getObject(new GetObjectRequest(summary.getBucketName(), summary.getKey()));
+         InputStream is = object.getObjectContent();
+         try{
+            int len;
+            while ((len = is.read(buffer)) != -1){
+               bytes += len;
+            }
+         } finally {
+            is.close();
+         }
+      }
+      return bytes;
+   }
+
+   private static void deleteRecursively(File file){
+      File[] children = file.listFiles();
+      if (children != null){
+         for (File child : children){
+            deleteRecursively(child);
+         }
+      }
+      file.delete();
+   }
+
+   public static void main(String[] args) throws Exception{
+      new Runner(new OptionsBuilder().include(SkipUnchangedBenchmark.class.getSimpleName()).build()).run();
+   }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.*;
+/**
+ * A fake Amazon S3 client serving a single bucket from memory. Listing honours
+ * prefix, delimiter, marker and max keys like S3 does.
+ * @author laurent
+ */
+public class InMemoryS3Client extends AmazonS3Client{
+
+   private final String bucketName;
+   private final TreeMap<String, byte[]> contents = new TreeMap<String, byte[]>();
+   private final Map<String, Date> lastModifieds = new TreeMap<String, Date>();
+   private final Map<String, Map<String, String>> userMetadatas = new TreeMap<String, Map<String, String>>();
+   private int maxKeys = 1000;
+   private int requestCount = 0;
+
+   public InMemoryS3Client(String bucketName){
+      super(new BasicAWSCredentials("access", "secret"));
+      this.bucketName = bucketName;
+   }
+
+   public void setMaxKeys(int maxKeys){
+      this.maxKeys = maxKeys;
+   }
+
+   public synchronized int getRequestCount(){
+      return requestCount;
+   }
+
+   public synchronized void putObject(String key, byte[] content, Date lastModified, Map<String, String> userMetadata){
+      contents.put(key, content);
+      lastModifieds.put(key, lastModified);
+      userMetadatas.put(key, userMetadata);
+   }
+
+   public synchronized void putObject(String key, byte[] content, Date lastModified){
+      putObject(key, content, lastModified, new TreeMap<String, String>());
+   }
+
+   @Override
+   public synchronized ObjectListing listObjects(ListObjectsRequest request) throws AmazonClientException{
+      requestCount++;
+      String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+      int max = request.getMaxKeys() == null ? maxKeys : Math.min(request.getMaxKeys(), maxKeys);
+
+      ObjectListing listing = new ObjectListing();
+      listing.setBucketName(bucketName);
+      listing.setPrefix(request.getPrefix());
+      listing.setDelimiter(request.getDelimiter());
+      listing.setMarker(request.getMarker());
+      listing.setMaxKeys(max);
+
+      TreeSet<String> commonPrefixes = new TreeSet<String>();
+      int count = 0;
+      String lastReturned = null;
+      for (String key : contents.keySet()){
+         if (!key.startsWith(prefix) || (request.getMarker() != null && key.compareTo(request.getMarker()) <= 0)){
+            continue;
+         }
+         if (request.getDelimiter() != null){
+            int delimiterPos = key.indexOf(request.getDelimiter(), prefix.length());
+            if (delimiterPos >= 0){
+               String commonPrefix = key.substring(0, delimiterPos + request.getDelimiter().length());
+               if (request.getMarker() != null && commonPrefix.compareTo(request.getMarker()) <= 0){
+                  continue;
+               }
+               if (!commonPrefixes.contains(commonPrefix)){
+                  if (count == max){
+                     listing.setTruncated(true);
+                     break;
+                  }
+                  commonPrefixes.add(commonPrefix);
+                  lastReturned = commonPrefix;
+                  count++;
+               }
+               continue;
+            }
+         }
+         if (count == max){
+            listing.setTruncated(true);
+            break;
+         }
+         listing.getObjectSummaries().add(buildSummary(key));
+         lastReturned = key;
+         count++;
+      }
+      listing.setCommonPrefixes(new ArrayList<String>(commonPrefixes));
+      if (listing.isTruncated()){
+         listing.setNextMarker(lastReturned);
+      }
+      return listing;
+   }
+
+   @Override
+   public ObjectListing listNextBatchOfObjects(ObjectListing previous) throws AmazonClientException{
+      if (!previous.isTruncated()){
+         ObjectListing empty = new ObjectListing();
+         empty.setBucketName(previous.getBucketName());
+         empty.setPrefix(previous.getPrefix());
+         empty.setDelimiter(previous.getDelimiter());
+         return empty;
+      }
+      return listObjects(new ListObjectsRequest(previous.getBucketName(), previous.getPrefix(),
+            previous.getNextMarker(), previous.getDelimiter(), previous.getMaxKeys()));
+   }
+
+   @Override
+   public S3Object getObject(String bucketName, String key) throws AmazonClientException{
+      return getObject(new GetObjectRequest(bucketName, key));
+   }
+
+   @Override
+   public synchronized S3Object getObject(GetObjectRequest request) throws AmazonClientException{
+      requestCount++;
+      byte[] content = contents.get(request.getKey());
+      if (content == null){
+         throw new AmazonS3Exception("The specified key does not exist.");
+      }
+      List<String> matchingETags = request.getMatchingETagConstraints();
+      if (matchingETags != null && !matchingETags.isEmpty() && !matchingETags.contains(eTag(content))){
+         // Like S3 client does when constraint is not met.
+         return null;
+      }
+      int start = 0;
+      int end = content.length - 1;
+      if (request.getRange() != null){
+         start = (int) Math.min(request.getRange()[0], content.length);
+         end = (int) Math.min(request.getRange()[1], content.length - 1);
+      }
+      S3Object object = new S3Object();
+      object.setBucketName(bucketName);
+      object.setKey(request.getKey());
+      object.setObjectMetadata(buildMetadata(request.getKey()));
+      object.getObjectMetadata().setContentLength(Math.max(0, end - start + 1));
+      object.setObjectContent(new ByteArrayInputStream(content, start, Math.max(0, end - start + 1)));
+      return object;
+   }
+
+   @Override
+   public synchronized ObjectMetadata getObjectMetadata(String bucketName, String key) throws AmazonClientException{
+      requestCount++;
+      if (!contents.containsKey(key)){
+         throw new AmazonS3Exception("The specified key does not exist.");
+      }
+      return buildMetadata(key);
+   }
+
+   private ObjectMetadata buildMetadata(String key){
+      ObjectMetadata metadata = new ObjectMetadata();
+      metadata.setContentLength(contents.get(key).length);
+      metadata.setLastModified(lastModifieds.get(key));
+      metadata.setUserMetadata(new TreeMap<String, String>(userMetadatas.get(key)));
+      return metadata;
+   }
+
+   private S3ObjectSummary buildSummary(String key){
+      S3ObjectSummary summary = new S3ObjectSummary();
+      summary.setBucketName(bucketName);
+      summary.setKey(key);
+      summary.setSize(contents.get(key).length);
+      summary.setLastModified(lastModifieds.get(key));
+      summary.setETag(eTag(contents.get(key)));
+      return summary;
+   }
+
+   private String eTag(byte[] content){
+      return Integer.toHexString(Arrays.hashCode(content));
+   }
+}
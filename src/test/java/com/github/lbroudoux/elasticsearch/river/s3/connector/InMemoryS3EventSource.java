@@ -0,0 +1,90 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+/**
+ * An in-process stand-in for an Amazon SQS queue receiving S3 event notifications.
+ * Polled events are kept in flight until acknowledged and can be redelivered.
+ * @author laurent
+ */
+public class InMemoryS3EventSource implements S3EventSource{
+
+   private final String bucketName;
+   private final LinkedBlockingQueue<S3ObjectEvent> queue = new LinkedBlockingQueue<S3ObjectEvent>();
+   private final List<S3ObjectEvent> inFlight = new ArrayList<S3ObjectEvent>();
+   private int receipts = 0;
+   private boolean closed = false;
+
+   public InMemoryS3EventSource(String bucketName){
+      this.bucketName = bucketName;
+   }
+
+   public synchronized void created(String key, long size, String eTag, Date eventTime){
+      queue.add(new S3ObjectEvent(S3ObjectEvent.Type.CREATED, bucketName, key, size, eTag, eventTime,
+            null, String.valueOf(receipts++)));
+   }
+
+   public synchronized void removed(String key, Date eventTime){
+      queue.add(new S3ObjectEvent(S3ObjectEvent.Type.REMOVED, bucketName, key, 0L, null, eventTime,
+            null, String.valueOf(receipts++)));
+   }
+
+   /** Make every event not acknowledged yet visible again, as SQS does once visibility timeout expires. */
+   public synchronized void redeliver(){
+      queue.addAll(inFlight);
+      inFlight.clear();
+   }
+
+   public synchronized int getInFlightCount(){
+      return inFlight.size();
+   }
+
+   public synchronized boolean isClosed(){
+      return closed;
+   }
+
+   @Override
+   public List<S3ObjectEvent> poll(long waitMillis) throws InterruptedException{
+      List<S3ObjectEvent> events = new ArrayList<S3ObjectEvent>();
+      S3ObjectEvent first = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+      if (first != null){
+         events.add(first);
+         queue.drainTo(events);
+      }
+      synchronized (this){
+         inFlight.addAll(events);
+      }
+      return events;
+   }
+
+   @Override
+   public synchronized void acknowledge(List<S3ObjectEvent> events){
+      inFlight.removeAll(events);
+   }
+
+   @Override
+   public synchronized void close(){
+      closed = true;
+   }
+}
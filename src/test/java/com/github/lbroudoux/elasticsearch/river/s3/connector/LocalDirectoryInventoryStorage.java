@@ -0,0 +1,59 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * A stand-in for inventory reports destination bucket, serving files of a local directory.
+ * Keys are paths relative to this directory.
+ * @author laurent
+ */
+public class LocalDirectoryInventoryStorage implements S3InventoryStorage{
+
+   private final File root;
+
+   public LocalDirectoryInventoryStorage(File root){
+      this.root = root;
+   }
+
+   @Override
+   public List<String> listFolders(String prefix) throws IOException{
+      List<String> folders = new ArrayList<String>();
+      File[] children = new File(root, prefix).listFiles();
+      if (children != null){
+         for (File child : children){
+            if (child.isDirectory()){
+               folders.add(prefix + child.getName() + "/");
+            }
+         }
+      }
+      return folders;
+   }
+
+   @Override
+   public InputStream open(String key) throws IOException{
+      File file = new File(root, key);
+      return file.isFile() ? new FileInputStream(file) : null;
+   }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * Test case for S3Connector retrieval of bucket objects content.
+ * @author laurent
+ */
+public class S3ConnectorContentTest {
+
+   private InMemoryS3Client client;
+
+   @Before
+   public void setUp() {
+      client = new InMemoryS3Client("mybucket");
+      Map<String, String> userMetadata = new TreeMap<String, String>();
+      userMetadata.put("author", "laurent");
+      client.putObject("Work/doc.txt", "Hello S3 river".getBytes(), new Date(1000L), userMetadata);
+   }
+
+   @Test
+   public void shouldGetContentAndMetadataWithSingleRequest() throws Exception {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      S3ObjectSummaries summaries = connector.getObjectSummaries(0L);
+      assertEquals(1, summaries.getPickedSummaries().size());
+      S3ObjectSummary summary = summaries.getPickedSummaries().get(0);
+
+      long connectorRequests = connector.getRequestCount();
+      int clientRequests = client.getRequestCount();
+      S3ObjectContent content = connector.getObjectContent(summary);
+      try{
+         assertEquals("Hello S3 river", new String(readFully(content.getContent())));
+         assertEquals("laurent", content.getUserMetadata().get("author"));
+      } finally {
+         content.close();
+      }
+      assertEquals(1, connector.getRequestCount() - connectorRequests);
+      assertEquals(1, client.getRequestCount() - clientRequests);
+   }
+
+   @Test
+   public void shouldOnlyGetRequestedRange() throws Exception {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      S3ObjectSummary summary = connector.getObjectSummaries(0L).getPickedSummaries().get(0);
+
+      S3ObjectContent content = connector.getObjectContent(summary, 5);
+      try{
+         assertEquals("Hello", new String(readFully(content.getContent())));
+      } finally {
+         content.close();
+      }
+      // Objects smaller than range are fully retrieved.
+      content = connector.getObjectContent(summary, 1024);
+      try{
+         assertEquals("Hello S3 river", new String(readFully(content.getContent())));
+      } finally {
+         content.close();
+      }
+   }
+
+   @Test
+   public void shouldDownloadContentToFile() throws Exception {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      S3ObjectSummary summary = connector.getObjectSummaries(0L).getPickedSummaries().get(0);
+      File target = File.createTempFile("s3river", ".test");
+      try{
+         ObjectMetadata metadata = connector.download(summary, target);
+         assertEquals("laurent", metadata.getUserMetadata().get("author"));
+         FileInputStream fis = new FileInputStream(target);
+         try{
+            assertEquals("Hello S3 river", new String(readFully(fis)));
+         } finally {
+            fis.close();
+         }
+      } finally {
+         target.delete();
+      }
+   }
+
+   @Test
+   public void shouldCountListingRequests() {
+      client.setMaxKeys(2);
+      for (int i = 0; i < 4; i++){
+         client.putObject("Work/doc-" + i + ".txt", new byte[]{1}, new Date(1000L));
+      }
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      connector.getObjectSummaries(0L);
+      assertEquals(client.getRequestCount(), connector.getRequestCount());
+   }
+
+   @Test
+   public void shouldShareRequestsCountWithFeedConnectors() {
+      client.putObject("Archives/old.txt", "Old content".getBytes(), new Date(1000L));
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      S3Connector archives = connector.connectFeed("mybucket", "Archives/");
+
+      S3ObjectSummaries summaries = archives.getObjectSummaries(0L);
+      assertEquals(1, summaries.getKeys().size());
+      assertEquals("Archives/old.txt", summaries.getKeys().get(0));
+      connector.getObjectSummaries(0L);
+      archives.close();
+
+      // Feed connector has issued its own requests on shared client and metrics.
+      assertEquals(2, client.getRequestCount());
+      assertEquals(2, connector.getRequestCount());
+      assertEquals(2, archives.getRequestCount());
+      assertEquals(2, connector.getListLatency().getCount());
+   }
+
+   private byte[] readFully(InputStream is) throws Exception {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int len;
+      while ((len = is.read(buffer)) != -1){
+         bos.write(buffer, 0, len);
+      }
+      return bos.toByteArray();
+   }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3KeyMatcher;
+/**
+ * Test case for S3Connector listing of bucket objects.
+ * @author laurent
+ */
+public class S3ConnectorListingTest {
+
+   private InMemoryS3Client client;
+
+   @Before
+   public void setUp() {
+      client = new InMemoryS3Client("mybucket");
+      client.setMaxKeys(3);
+      for (String folder : new String[]{"Work/a/", "Work/b/", "Work/b/c/", "Work/", "Other/"}){
+         for (int i = 0; i < 5; i++){
+            client.putObject(folder + "doc-" + i + ".pdf", new byte[]{1}, new Date(1000L * i));
+            client.putObject(folder + "movie-" + i + ".mkv", new byte[]{1}, new Date(1000L * i));
+         }
+      }
+   }
+
+   @Test
+   public void shouldListAndFilterSequentially() {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      S3ObjectSummaries summaries = connector.getObjectSummaries(2000L,
+            S3KeyMatcher.compile(Arrays.asList("*.pdf"), null));
+      assertEquals(20, summaries.getKeys().size());
+      // Only doc-3 and doc-4 have been modified after 2000.
+      assertEquals(8, summaries.getPickedSummaries().size());
+      for (String key : summaries.getKeys()){
+         assertTrue(key.startsWith("Work/") && key.endsWith(".pdf"));
+      }
+      // Movies are listed but filtered out.
+      assertEquals(40, summaries.getListedCount());
+      assertTrue(connector.getListLatency().getCount() > 0);
+   }
+
+   @Test
+   public void shouldListSubPrefixesConcurrently() {
+      S3Connector sequential = new S3Connector(client, "mybucket", "Work/");
+      S3Connector partitioned = new S3Connector(client, "mybucket", "Work/");
+      partitioned.setListingConcurrency(3);
+      assertSameSummaries(sequential.getObjectSummaries(2000L), partitioned.getObjectSummaries(2000L));
+   }
+
+   @Test
+   public void shouldListKeyRangesConcurrently() {
+      S3Connector sequential = new S3Connector(client, "mybucket", null);
+      S3Connector partitioned = new S3Connector(client, "mybucket", null);
+      partitioned.setListingConcurrency(2);
+      partitioned.setListingSplitPoints(Arrays.asList("Work/a/movie-4.mkv", "Work/b/doc-0.pdf", "Work/c"));
+      assertSameSummaries(sequential.getObjectSummaries(null), partitioned.getObjectSummaries(null));
+   }
+
+   @Test
+   public void shouldStreamListingPages() throws Exception {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      final List<S3ObjectSummaries> pages = new ArrayList<S3ObjectSummaries>();
+      Long scanTime = connector.listObjectSummaries(2000L, S3KeyMatcher.ALL, new S3ObjectSummariesListener() {
+         @Override
+         public void onPage(String partition, S3ObjectSummaries page) {
+            assertEquals("Work/", partition);
+            pages.add(page);
+         }
+      });
+      assertNotNull(scanTime);
+      // 40 objects listed 3 by 3.
+      assertEquals(14, pages.size());
+      int keys = 0;
+      for (S3ObjectSummaries page : pages){
+         assertTrue(page.getKeys().size() <= 3);
+         keys += page.getKeys().size();
+      }
+      assertEquals(40, keys);
+   }
+
+   private void assertSameSummaries(S3ObjectSummaries expected, S3ObjectSummaries actual){
+      assertEquals(expected.getKeys().size(), actual.getKeys().size());
+      assertEquals(new HashSet<String>(expected.getKeys()), new HashSet<String>(actual.getKeys()));
+      assertEquals(keysOf(expected), keysOf(actual));
+   }
+
+   private Set<String> keysOf(S3ObjectSummaries summaries){
+      Set<String> keys = new HashSet<String>();
+      for (S3ObjectSummary summary : summaries.getPickedSummaries()){
+         keys.add(summary.getKey());
+      }
+      return keys;
+   }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.river.S3KeyMatcher;
+/**
+ * Test case for S3InventoryReader reading inventory reports from a local directory.
+ * @author laurent
+ */
+public class S3InventoryReaderTest {
+
+   private static final String PREFIX = "inventory/mybucket/daily/";
+
+   private File root;
+
+   @Before
+   public void setUp() throws Exception {
+      root = File.createTempFile("inventory", "");
+      root.delete();
+      root.mkdirs();
+      // An older report that should be ignored.
+      writeReport("2015-09-01T00-00Z", 1441065600000L, "data/old.csv.gz",
+            "\"mybucket\",\"Work/old.pdf\",\"10\",\"2015-08-01T00:00:00.000Z\",\"etag0\"");
+      writeReport("2015-09-02T00-00Z", 1441152000000L, "data/part-1.csv.gz",
+            "\"mybucket\",\"Other/doc.pdf\",\"10\",\"2015-08-01T00:00:00.000Z\",\"etag1\"",
+            "\"mybucket\",\"Work/doc-1.pdf\",\"10\",\"2015-08-01T00:00:00.000Z\",\"etag2\"",
+            "\"mybucket\",\"Work/my+doc%C3%A9.pdf\",\"20\",\"2015-09-01T12:00:00.000Z\",\"etag3\"",
+            "\"mybucket\",\"Work/movie.mkv\",\"30\",\"2015-09-01T12:00:00.000Z\",\"etag4\"");
+      new File(root, PREFIX + "data").mkdirs();
+      new File(root, PREFIX + "hive").mkdirs();
+   }
+
+   @After
+   public void tearDown() {
+      delete(root);
+   }
+
+   @Test
+   public void shouldReadLatestInventoryReport() throws Exception {
+      S3InventoryReader reader = new S3InventoryReader(new LocalDirectoryInventoryStorage(root), PREFIX);
+      RecordingListener listener = new RecordingListener();
+      long scanTime = reader.listObjectSummaries("mybucket", "Work/", 1441065600000L,
+            S3KeyMatcher.compile(Arrays.asList("*.pdf"), null), listener);
+
+      assertEquals(1441152000000L, scanTime);
+      assertEquals(Arrays.asList("Work/doc-1.pdf", "Work/my docé.pdf"), listener.keys);
+      assertEquals(1, listener.picked.size());
+      S3ObjectSummary summary = listener.picked.get(0);
+      assertEquals("mybucket", summary.getBucketName());
+      assertEquals("Work/my docé.pdf", summary.getKey());
+      assertEquals(20L, summary.getSize());
+      assertEquals("etag3", summary.getETag());
+      assertEquals(1441108800000L, summary.getLastModified().getTime());
+   }
+
+   @Test
+   public void shouldBeUsedByConnectorInsteadOfListing() {
+      InMemoryS3Client client = new InMemoryS3Client("mybucket");
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      connector.setInventoryReader(new S3InventoryReader(new LocalDirectoryInventoryStorage(root), PREFIX));
+      S3ObjectSummaries summaries = connector.getObjectSummaries(null, S3KeyMatcher.ALL);
+      assertEquals(3, summaries.getKeys().size());
+      assertEquals(3, summaries.getPickedSummaries().size());
+      assertEquals(0, client.getRequestCount());
+   }
+
+   @Test
+   public void shouldSplitUnsortedFilesIntoSortedPartitions() throws Exception {
+      writeReport("2015-09-03T00-00Z", 1441238400000L, "data/part-2.csv.gz",
+            "\"mybucket\",\"Work/b.pdf\",\"10\",\"2015-08-01T00:00:00.000Z\",\"etag1\"",
+            "\"mybucket\",\"Work/a.pdf\",\"10\",\"2015-08-01T00:00:00.000Z\",\"etag2\"");
+      S3InventoryReader reader = new S3InventoryReader(new LocalDirectoryInventoryStorage(root), PREFIX);
+      RecordingListener listener = new RecordingListener();
+      reader.listObjectSummaries("mybucket", null, null, S3KeyMatcher.ALL, listener);
+      assertEquals(Arrays.asList("Work/b.pdf", "Work/a.pdf"), listener.keys);
+      assertEquals(2, listener.partitions.size());
+      assertFalse(listener.partitions.get(0).equals(listener.partitions.get(1)));
+   }
+
+   @Test(expected = AmazonClientException.class)
+   public void shouldFailWithoutInventoryReport() {
+      S3Connector connector = new S3Connector(new InMemoryS3Client("mybucket"), "mybucket", null);
+      connector.setInventoryReader(new S3InventoryReader(new LocalDirectoryInventoryStorage(root), "inventory/other/"));
+      connector.getObjectSummaries(null);
+   }
+
+   @Test
+   public void shouldRejectInventoryReportWithoutSize() throws Exception {
+      writeReportWithSchema("2015-09-03T00-00Z", 1441238400000L, "Bucket, Key, LastModifiedDate, ETag",
+            "data/part-2.csv.gz",
+            "\"mybucket\",\"Work/a.pdf\",\"2015-08-01T00:00:00.000Z\",\"etag1\"");
+      S3InventoryReader reader = new S3InventoryReader(new LocalDirectoryInventoryStorage(root), PREFIX);
+      RecordingListener listener = new RecordingListener();
+      try{
+         reader.listObjectSummaries("mybucket", null, null, S3KeyMatcher.ALL, listener);
+         fail("Inventory report without Size should be rejected");
+      } catch (IOException ioe){
+         assertTrue(ioe.getMessage().contains("Size"));
+      }
+      assertTrue(listener.keys.isEmpty());
+   }
+
+   @Test
+   public void shouldParseQuotedCsvValues() {
+      assertEquals(Arrays.asList("mybucket", "Work/a,b\"c.pdf", "", "x"),
+            S3InventoryReader.parseCsvLine("\"mybucket\",\"Work/a,b\"\"c.pdf\",\"\",x"));
+   }
+
+   private void writeReport(String date, long creationTimestamp, String dataFile, String... rows) throws IOException {
+      writeReportWithSchema(date, creationTimestamp, "Bucket, Key, Size, LastModifiedDate, ETag", dataFile, rows);
+   }
+
+   private void writeReportWithSchema(String date, long creationTimestamp, String schema, String dataFile, String... rows)
+         throws IOException {
+      File folder = new File(root, PREFIX + date);
+      folder.mkdirs();
+      write(new File(folder, "manifest.json"), "{\"sourceBucket\":\"mybucket\",\"destinationBucket\":\"arn:aws:s3:::inventories\","
+            + "\"version\":\"2016-11-30\",\"creationTimestamp\":\"" + creationTimestamp + "\",\"fileFormat\":\"CSV\","
+            + "\"fileSchema\":\"" + schema + "\","
+            + "\"files\":[{\"key\":\"" + PREFIX + dataFile + "\",\"size\":100,\"MD5checksum\":\"abc\"}]}", false);
+      StringBuilder content = new StringBuilder();
+      for (String row : rows){
+         content.append(row).append('\n');
+      }
+      File data = new File(root, PREFIX + dataFile);
+      data.getParentFile().mkdirs();
+      write(data, content.toString(), true);
+   }
+
+   private void write(File file, String content, boolean gzip) throws IOException {
+      FileOutputStream fos = new FileOutputStream(file);
+      Writer writer = new OutputStreamWriter(gzip ? new GZIPOutputStream(fos) : fos, "UTF-8");
+      try{
+         writer.write(content);
+      } finally {
+         writer.close();
+      }
+   }
+
+   private void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null){
+         for (File child : children){
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+
+   private static class RecordingListener implements S3ObjectSummariesListener {
+
+      private final List<String> partitions = new ArrayList<String>();
+      private final List<String> keys = new ArrayList<String>();
+      private final List<S3ObjectSummary> picked = new ArrayList<S3ObjectSummary>();
+
+      @Override
+      public void onPage(String partition, S3ObjectSummaries page) {
+         partitions.add(partition);
+         keys.addAll(page.getKeys());
+         picked.addAll(page.getPickedSummaries());
+      }
+   }
+}
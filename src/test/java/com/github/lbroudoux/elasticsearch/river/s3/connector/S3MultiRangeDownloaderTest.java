@@ -0,0 +1,141 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * Test case for S3MultiRangeDownloader and parallel download through S3Connector.
+ * @author laurent
+ */
+public class S3MultiRangeDownloaderTest {
+
+   private InMemoryS3Client client;
+   private byte[] content;
+   private File spoolDirectory;
+
+   @Before
+   public void setUp() throws Exception {
+      client = new InMemoryS3Client("mybucket");
+      content = new byte[100003];
+      new Random(42).nextBytes(content);
+      client.putObject("Work/big.bin", content, new Date(1000L));
+      client.putObject("Work/small.bin", new byte[]{1, 2, 3}, new Date(1000L));
+      spoolDirectory = File.createTempFile("spool", "");
+      spoolDirectory.delete();
+      spoolDirectory.mkdirs();
+   }
+
+   @After
+   public void tearDown() {
+      File[] files = spoolDirectory.listFiles();
+      if (files != null){
+         for (File file : files){
+            file.delete();
+         }
+      }
+      spoolDirectory.delete();
+   }
+
+   @Test
+   public void shouldDownloadByteIdenticalContentInParts() throws Exception {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      connector.setParallelDownload(10000, 4);
+      S3ObjectSummary summary = summary(connector, "Work/big.bin");
+      assertTrue(connector.isParallelDownload(summary));
+      int requestsBefore = client.getRequestCount();
+
+      File target = new File(spoolDirectory, "big.bin");
+      ObjectMetadata metadata = connector.download(summary, target);
+      assertTrue(Arrays.equals(content, readFully(new FileInputStream(target))));
+      assertEquals(content.length, metadata.getContentLength());
+      // 11 parts of at most 10000 bytes.
+      assertEquals(11, client.getRequestCount() - requestsBefore);
+      connector.close();
+   }
+
+   @Test
+   public void shouldDownloadSmallObjectsWithSingleRequest() throws Exception {
+      S3Connector connector = new S3Connector(client, "mybucket", "Work/");
+      connector.setParallelDownload(10000, 4);
+      S3ObjectSummary summary = summary(connector, "Work/small.bin");
+      assertFalse(connector.isParallelDownload(summary));
+      int requestsBefore = client.getRequestCount();
+      File target = new File(spoolDirectory, "small.bin");
+      connector.download(summary, target);
+      assertTrue(Arrays.equals(new byte[]{1, 2, 3}, readFully(new FileInputStream(target))));
+      assertEquals(1, client.getRequestCount() - requestsBefore);
+      connector.close();
+   }
+
+   @Test
+   public void shouldFailWhenObjectChanged() throws Exception {
+      S3MultiRangeDownloader downloader = new S3MultiRangeDownloader(client, "mybucket", 30000, 2,
+            new AtomicLong());
+      S3ObjectSummary summary = summary(new S3Connector(client, "mybucket", null), "Work/big.bin");
+      // Object is overwritten after having been listed.
+      client.putObject("Work/big.bin", new byte[content.length], new Date(2000L));
+      try{
+         downloader.download(summary, new File(spoolDirectory, "big.bin"));
+         fail("Download of a changed object should fail");
+      } catch (AmazonClientException ace){
+         // Expected.
+      }
+      downloader.close();
+   }
+
+   private S3ObjectSummary summary(S3Connector connector, String key) {
+      for (S3ObjectSummary summary : connector.getObjectSummaries(0L).getPickedSummaries()){
+         if (summary.getKey().equals(key)){
+            return summary;
+         }
+      }
+      throw new IllegalStateException("No object " + key);
+   }
+
+   private byte[] readFully(InputStream is) throws Exception {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try{
+         byte[] buffer = new byte[4096];
+         int len;
+         while ((len = is.read(buffer)) != -1){
+            bos.write(buffer, 0, len);
+         }
+      } finally {
+         is.close();
+      }
+      return bos.toByteArray();
+   }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.connector;
+
+import static junit.framework.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+/**
+ * Test case for SqsS3EventSource parsing of notifications.
+ * @author laurent
+ */
+public class SqsS3EventSourceTest {
+
+   private static final String NOTIFICATION = "{\"Records\":["
+         + "{\"eventVersion\":\"2.0\",\"eventSource\":\"aws:s3\",\"eventTime\":\"2015-09-01T10:15:30.000Z\","
+         + "\"eventName\":\"ObjectCreated:Put\",\"s3\":{\"bucket\":{\"name\":\"mybucket\"},"
+         + "\"object\":{\"key\":\"Work/my+doc%C3%A9.pdf\",\"size\":1024,\"eTag\":\"d41d8cd98f00b204e9800998ecf8427e\","
+         + "\"sequencer\":\"0055AED6DCD90281E5\"}}},"
+         + "{\"eventVersion\":\"2.0\",\"eventSource\":\"aws:s3\",\"eventTime\":\"2015-09-01T10:16:30.000Z\","
+         + "\"eventName\":\"ObjectRemoved:Delete\",\"s3\":{\"bucket\":{\"name\":\"mybucket\"},"
+         + "\"object\":{\"key\":\"Work/old.pdf\",\"sequencer\":\"0055AED6DCD90281E6\"}}}]}";
+
+   @Test
+   public void shouldParseS3Notification() {
+      List<S3ObjectEvent> events = SqsS3EventSource.parseMessage(NOTIFICATION, "receipt");
+      assertEquals(2, events.size());
+
+      S3ObjectEvent created = events.get(0);
+      assertEquals(S3ObjectEvent.Type.CREATED, created.getType());
+      assertEquals("mybucket", created.getBucketName());
+      assertEquals("Work/my docé.pdf", created.getKey());
+      assertEquals(1024L, created.getSize());
+      assertEquals("d41d8cd98f00b204e9800998ecf8427e", created.getETag());
+      assertEquals(1441102530000L, created.getEventTime().getTime());
+      assertEquals("receipt", created.getReceipt());
+
+      S3ObjectEvent removed = events.get(1);
+      assertEquals(S3ObjectEvent.Type.REMOVED, removed.getType());
+      assertEquals("Work/old.pdf", removed.getKey());
+      assertTrue(removed.isAfter(created));
+      assertFalse(created.isAfter(removed));
+   }
+
+   @Test
+   public void shouldParseNotificationPublishedThroughSns() {
+      String message = "{\"Type\":\"Notification\",\"Message\":\"" + NOTIFICATION.replace("\"", "\\\"") + "\"}";
+      assertEquals(2, SqsS3EventSource.parseMessage(message, "receipt").size());
+   }
+
+   @Test
+   public void shouldIgnoreTestEventsAndGarbage() {
+      String testEvent = "{\"Service\":\"Amazon S3\",\"Event\":\"s3:TestEvent\",\"Bucket\":\"mybucket\"}";
+      assertTrue(SqsS3EventSource.parseMessage(testEvent, "receipt").isEmpty());
+      assertTrue(SqsS3EventSource.parseMessage("not a json", "receipt").isEmpty());
+   }
+
+   @Test
+   public void shouldCompareSequencersOfDifferentLengths() {
+      S3ObjectEvent shorter = new S3ObjectEvent(S3ObjectEvent.Type.CREATED, "b", "k", 0L, null, null, "0055AED6DCD9028", "r");
+      S3ObjectEvent longer = new S3ObjectEvent(S3ObjectEvent.Type.REMOVED, "b", "k", 0L, null, null, "0055AED6DCD90281E5", "r");
+      assertTrue(longer.isAfter(shorter));
+   }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.junit.After;
+import org.junit.Test;
+/**
+ * Test case for ExtractionExecutor class.
+ * @author laurent
+ */
+public class ExtractionExecutorTest {
+
+   private final ExtractionExecutor executor = new ExtractionExecutor(200, 1, Executors.defaultThreadFactory());
+
+   @After
+   public void tearDown() {
+      executor.shutdown();
+   }
+
+   @Test
+   public void testExtractionCompletes() throws Exception {
+      String text = executor.extract(new PlainTextExtractor(),
+            new ByteArrayInputStream("Hello world".getBytes("UTF-8")), new Metadata(), 100);
+      assertEquals("Hello world", text);
+   }
+
+   @Test
+   public void testRunawayExtractionIsAbandoned() throws Exception {
+      final CountDownLatch release = new CountDownLatch(1);
+      // A parser ignoring interruptions, as one spinning on CPU does.
+      ContentExtractor runaway = new ContentExtractor() {
+         @Override
+         public String extract(InputStream stream, Metadata metadata, int maxLength) {
+            boolean released = false;
+            while (!released){
+               try{
+                  released = release.await(10, TimeUnit.SECONDS);
+               } catch (InterruptedException ie){
+                  // Ignored on purpose.
+               }
+            }
+            return "late";
+         }
+      };
+      long start = System.currentTimeMillis();
+      try{
+         executor.extract(runaway, new ByteArrayInputStream(new byte[0]), new Metadata(), 100);
+         fail("Extraction should have timed out");
+      } catch (ExtractionLimitException ele){
+         // Expected.
+      }
+      assertTrue(System.currentTimeMillis() - start < 5000);
+      assertEquals(1, executor.getAbandonedCount());
+
+      // Too many runaway extractions are still running : new ones are refused.
+      try{
+         executor.extract(new PlainTextExtractor(), new ByteArrayInputStream("Hello".getBytes("UTF-8")), new Metadata(), 100);
+         fail("Extraction should have been refused");
+      } catch (ExtractionLimitException ele){
+         fail("Refusal is not a limit failure of file");
+      } catch (IOException ioe){
+         // Expected.
+      }
+      assertEquals(1, executor.getRefusedCount());
+
+      release.countDown();
+      for (int i = 0; i < 100 && executor.getAbandonedCount() > 0; i++){
+         Thread.sleep(20);
+      }
+      assertEquals(0, executor.getAbandonedCount());
+      assertEquals("Hello", executor.extract(new PlainTextExtractor(),
+            new ByteArrayInputStream("Hello".getBytes("UTF-8")), new Metadata(), 100));
+   }
+
+   @Test
+   public void testOutOfMemoryIsRethrown() throws Exception {
+      ContentExtractor greedy = new ContentExtractor() {
+         @Override
+         public String extract(InputStream stream, Metadata metadata, int maxLength) {
+            throw new OutOfMemoryError("Java heap space");
+         }
+      };
+      try{
+         executor.extract(greedy, new ByteArrayInputStream(new byte[0]), new Metadata(), 100);
+         fail("Extraction should have failed");
+      } catch (ExtractionLimitException ele){
+         fail("Errors should not be turned into a failure of file");
+      } catch (OutOfMemoryError oome){
+         // Expected.
+      }
+   }
+
+   @Test
+   public void testExtractorExceptionsArePropagated() throws Exception {
+      ContentExtractor failing = new ContentExtractor() {
+         @Override
+         public String extract(InputStream stream, Metadata metadata, int maxLength) throws IOException, TikaException {
+            throw new TikaException("Unsupported format");
+         }
+      };
+      try{
+         executor.extract(failing, new ByteArrayInputStream(new byte[0]), new Metadata(), 100);
+         fail("Extraction should have failed");
+      } catch (ExtractionLimitException ele){
+         fail("Failure is not a limit one");
+      } catch (TikaException te){
+         assertEquals("Unsupported format", te.getMessage());
+      }
+   }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.extractor;
+
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.tika.metadata.Metadata;
+import org.junit.Test;
+/**
+ * Test case for ExtractorRegistry and its extractors.
+ * @author laurent
+ */
+public class ExtractorRegistryTest {
+
+   private final ExtractorRegistry registry = ExtractorRegistry.defaultRegistry();
+
+   @Test
+   public void testContentTypeTakesPrecedence() {
+      assertTrue(registry.get("text/plain; charset=UTF-8", "docs/report.pdf") instanceof PlainTextExtractor);
+      assertTrue(registry.get("TEXT/HTML", "docs/report.txt") instanceof HtmlExtractor);
+      assertTrue(registry.get("application/pdf", "docs/report.txt") instanceof TikaExtractor);
+   }
+
+   @Test
+   public void testExtensionUsedForGenericContentType() {
+      assertTrue(registry.get(null, "logs/app.LOG") instanceof PlainTextExtractor);
+      assertTrue(registry.get("binary/octet-stream", "data/export.csv") instanceof PlainTextExtractor);
+      assertTrue(registry.get("application/octet-stream", "site/index.htm") instanceof HtmlExtractor);
+      assertTrue(registry.get(null, "docs/report.pdf") instanceof TikaExtractor);
+      assertTrue(registry.get(null, "docs.txt/README") instanceof TikaExtractor);
+   }
+
+   @Test
+   public void testPlainTextDetectsCharset() throws Exception {
+      Metadata metadata = new Metadata();
+      byte[] content = "Les élèves ont été très appliqués à l'école, même en été.".getBytes("ISO-8859-1");
+      String text = new PlainTextExtractor().extract(new ByteArrayInputStream(content), metadata, 1000);
+      assertEquals("Les élèves ont été très appliqués à l'école, même en été.", text);
+      assertEquals("ISO-8859-1", metadata.get(Metadata.CONTENT_ENCODING));
+      assertTrue(metadata.get(Metadata.CONTENT_TYPE).startsWith("text/plain"));
+   }
+
+   @Test
+   public void testPlainTextIsTruncated() throws Exception {
+      String text = new PlainTextExtractor().extract(new ByteArrayInputStream("0123456789".getBytes("UTF-8")),
+            new Metadata(), 4);
+      assertEquals("0123", text);
+   }
+
+   @Test
+   public void testHtmlStripsMarkup() throws Exception {
+      Metadata metadata = new Metadata();
+      String html = "<html><head><title>Hello</title></head><body><p>Hello <b>world</b></p></body></html>";
+      String text = new HtmlExtractor().extract(new ByteArrayInputStream(html.getBytes("UTF-8")), metadata, 1000);
+      assertEquals("Hello world", text.trim());
+      assertEquals("Hello", metadata.get("title"));
+   }
+
+   @Test
+   public void testHtmlIsTruncated() throws Exception {
+      String html = "<html><body><p>" + "abcdefghij" + "</p></body></html>";
+      String text = new HtmlExtractor().extract(new ByteArrayInputStream(html.getBytes("UTF-8")), new Metadata(), 5);
+      assertEquals("abcde", text);
+   }
+}
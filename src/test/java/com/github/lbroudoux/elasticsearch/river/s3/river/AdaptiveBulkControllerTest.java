@@ -0,0 +1,83 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import org.junit.Test;
+/**
+ * Test case for AdaptiveBulkController class.
+ * @author laurent
+ */
+public class AdaptiveBulkControllerTest {
+
+   @Test
+   public void shouldStartAtConfiguredValues() {
+      AdaptiveBulkController controller = new AdaptiveBulkController(100, 4);
+      assertEquals(100, controller.getBulkActions());
+      assertEquals(4, controller.getConcurrency());
+      // Fast bulks do not grow beyond configured values.
+      for (int i = 0; i < 20; i++){
+         assertFalse(controller.onBulk(10, false));
+      }
+      assertEquals(100, controller.getBulkActions());
+   }
+
+   @Test
+   public void shouldShrinkOnRejection() {
+      AdaptiveBulkController controller = new AdaptiveBulkController(100, 4);
+      assertTrue(controller.onBulk(10, true));
+      assertEquals(50, controller.getBulkActions());
+      assertEquals(3, controller.getConcurrency());
+      assertTrue(controller.onBulkFailure(true));
+      assertEquals(25, controller.getBulkActions());
+      assertEquals(2, controller.getConcurrency());
+      assertFalse(controller.onBulkFailure(false));
+   }
+
+   @Test
+   public void shouldShrinkOnSlowBulkWithinBounds() {
+      AdaptiveBulkController controller = new AdaptiveBulkController(100, 2);
+      for (int i = 0; i < 10; i++){
+         controller.onBulk(5000, false);
+      }
+      assertEquals(5, controller.getBulkActions());
+      assertEquals(1, controller.getConcurrency());
+      assertFalse(controller.onBulk(5000, false));
+   }
+
+   @Test
+   public void shouldGrowBackAfterFastBulks() {
+      AdaptiveBulkController controller = new AdaptiveBulkController(100, 4);
+      controller.onBulk(10, true);
+      controller.onBulk(10, true);
+      assertEquals(25, controller.getBulkActions());
+      // A medium bulk resets the series of fast bulks.
+      for (int i = 0; i < 4; i++){
+         assertFalse(controller.onBulk(10, false));
+      }
+      assertFalse(controller.onBulk(1000, false));
+      for (int i = 0; i < 4; i++){
+         assertFalse(controller.onBulk(10, false));
+      }
+      assertTrue(controller.onBulk(10, false));
+      assertEquals(31, controller.getBulkActions());
+      assertEquals(3, controller.getConcurrency());
+   }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+/**
+ * Test case for BoundedWorkerPool class.
+ * @author laurent
+ */
+public class BoundedWorkerPoolTest {
+
+   private BoundedWorkerPool pool;
+
+   @After
+   public void tearDown() {
+      if (pool != null){
+         pool.shutdown();
+      }
+   }
+
+   @Test(timeout = 5000)
+   public void shouldRunEveryTaskOfGroup() throws Exception {
+      pool = new BoundedWorkerPool(2, 4, Executors.defaultThreadFactory());
+      final AtomicInteger runs = new AtomicInteger();
+      BoundedWorkerPool.TaskGroup tasks = pool.newTaskGroup();
+      for (int i = 0; i < 20; i++){
+         tasks.submit(new Runnable() {
+            @Override
+            public void run() {
+               runs.incrementAndGet();
+            }
+         });
+      }
+      tasks.awaitCompletion();
+      assertEquals(20, runs.get());
+      assertEquals(0, pool.getInFlight());
+   }
+
+   @Test(timeout = 5000)
+   public void shouldNotWaitForTasksDroppedByShutdown() throws Exception {
+      pool = new BoundedWorkerPool(1, 4, Executors.defaultThreadFactory());
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      BoundedWorkerPool.TaskGroup tasks = pool.newTaskGroup();
+      // A task ignoring interruptions occupies the single worker, others are queued.
+      tasks.submit(new Runnable() {
+         @Override
+         public void run() {
+            running.countDown();
+            while (true){
+               try{
+                  release.await();
+                  return;
+               } catch (InterruptedException ie){
+                  // Keep running.
+               }
+            }
+         }
+      });
+      for (int i = 0; i < 3; i++){
+         tasks.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+         });
+      }
+      running.await();
+      assertEquals(4, pool.getInFlight());
+
+      pool.shutdown();
+      // Only the running task still holds a slot.
+      assertEquals(1, pool.getInFlight());
+      try{
+         tasks.awaitCompletion();
+         fail("Waiting for group should give up once pool is shut down");
+      } catch (InterruptedException ie){
+         // Expected.
+      }
+
+      // Once running task ends, nothing is pending anymore.
+      release.countDown();
+      while (pool.getInFlight() > 0){
+         Thread.sleep(10);
+      }
+      tasks.awaitCompletion();
+   }
+
+   @Test(timeout = 5000)
+   public void shouldResizeInFlightBoundWithConcurrency() throws Exception {
+      pool = new BoundedWorkerPool(2, 4, Executors.defaultThreadFactory());
+      pool.setConcurrency(4);
+      assertEquals(4, pool.getConcurrency());
+      assertEquals(8, pool.getMaxInFlight());
+
+      // Fill the grown pool with blocking tasks.
+      final CountDownLatch release = new CountDownLatch(1);
+      Runnable blocking = new Runnable() {
+         @Override
+         public void run() {
+            try{
+               release.await();
+            } catch (InterruptedException ie){
+               Thread.currentThread().interrupt();
+            }
+         }
+      };
+      final BoundedWorkerPool.TaskGroup tasks = pool.newTaskGroup();
+      for (int i = 0; i < 8; i++){
+         tasks.submit(blocking);
+      }
+      assertEquals(8, pool.getInFlight());
+
+      // Shrinking does not drop tasks already in flight, but lowers the bound.
+      pool.setConcurrency(1);
+      assertEquals(2, pool.getMaxInFlight());
+      assertEquals(8, pool.getInFlight());
+
+      final CountDownLatch submitted = new CountDownLatch(1);
+      Thread producer = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            try{
+               tasks.submit(new Runnable() {
+                  @Override
+                  public void run() {
+                  }
+               });
+               submitted.countDown();
+            } catch (InterruptedException ie){
+               // Test is ending.
+            }
+         }
+      });
+      producer.start();
+      assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+
+      release.countDown();
+      assertTrue(submitted.await(2, TimeUnit.SECONDS));
+      tasks.awaitCompletion();
+      assertEquals(0, pool.getInFlight());
+   }
+
+   @Test(timeout = 5000)
+   public void shouldRejectTasksOnceShutdown() throws Exception {
+      pool = new BoundedWorkerPool(1, 2, Executors.defaultThreadFactory());
+      pool.shutdown();
+      BoundedWorkerPool.TaskGroup tasks = pool.newTaskGroup();
+      try{
+         tasks.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+         });
+         fail("Task should be rejected");
+      } catch (RuntimeException re){
+         // Expected.
+      }
+      assertEquals(0, pool.getInFlight());
+      tasks.awaitCompletion();
+   }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+/**
+ * Test case for CompactKeySet class.
+ * @author laurent
+ */
+public class CompactKeySetTest {
+
+   @Test
+   public void shouldBeEmpty() {
+      CompactKeySet set = new CompactKeySet.Builder().build();
+      assertEquals(0, set.size());
+      assertFalse(set.contains("mydoc.pdf"));
+   }
+
+   @Test
+   public void shouldContainAddedKeys() {
+      CompactKeySet set = new CompactKeySet.Builder()
+            .add("Work-mydoc.pdf")
+            .add("Work-2013-report.doc")
+            .add("Work-2013-report.docx")
+            .add("Work-été.txt")
+            .build();
+      assertEquals(4, set.size());
+      assertTrue(set.contains("Work-mydoc.pdf"));
+      assertTrue(set.contains("Work-2013-report.doc"));
+      assertTrue(set.contains("Work-2013-report.docx"));
+      assertTrue(set.contains("Work-été.txt"));
+      assertFalse(set.contains("Work-2013-report"));
+      assertFalse(set.contains("Work-2013-report.do"));
+      assertFalse(set.contains("Work-zzz.pdf"));
+      assertFalse(set.contains("Archive-mydoc.pdf"));
+   }
+
+   @Test
+   public void shouldIgnoreDuplicatesAcrossRuns() {
+      CompactKeySet.Builder builder = new CompactKeySet.Builder(3);
+      for (int i = 0; i < 10; i++){
+         builder.add("key-" + (i % 4));
+      }
+      CompactKeySet set = builder.build();
+      assertEquals(4, set.size());
+      for (int i = 0; i < 4; i++){
+         assertTrue(set.contains("key-" + i));
+      }
+      assertFalse(set.contains("key-4"));
+   }
+
+   @Test
+   public void shouldBehaveLikeHashSet() {
+      Random random = new Random(42);
+      Set<String> expected = new HashSet<String>();
+      CompactKeySet.Builder builder = new CompactKeySet.Builder(1000);
+      for (int i = 0; i < 20000; i++){
+         String key = "folder-" + random.nextInt(50) + "-file-" + random.nextInt(100000) + ".pdf";
+         expected.add(key);
+         builder.add(key);
+      }
+      CompactKeySet set = builder.build();
+      assertEquals(expected.size(), set.size());
+      for (String key : expected){
+         assertTrue(set.contains(key));
+      }
+      for (int i = 0; i < 20000; i++){
+         String key = "folder-" + random.nextInt(50) + "-file-" + random.nextInt(100000) + ".pdf";
+         assertEquals(expected.contains(key), set.contains(key));
+      }
+   }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import org.junit.Test;
+/**
+ * Test case for LatencyHistogram class.
+ * @author laurent
+ */
+public class LatencyHistogramTest {
+
+   @Test
+   public void testEmptyHistogram() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assertEquals(0, histogram.getCount());
+      assertEquals(0, histogram.getPercentile(99));
+      assertEquals(0.0, histogram.getMean());
+   }
+
+   @Test
+   public void testBucketsBounds() {
+      for (long value : new long[]{0, 1, 7, 8, 15, 16, 100, 1000, 123456789L, Long.MAX_VALUE / 2}){
+         int bucket = LatencyHistogram.bucketOf(value);
+         long upperBound = LatencyHistogram.upperBoundOf(bucket);
+         assertTrue(value <= upperBound);
+         // Precision is 1/8th of value.
+         assertTrue(upperBound - value <= value / 8);
+         assertEquals(bucket + 1, LatencyHistogram.bucketOf(upperBound + 1));
+      }
+   }
+
+   @Test
+   public void testPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (int i = 1; i <= 1000; i++){
+         histogram.record(i);
+      }
+      assertEquals(1000, histogram.getCount());
+      assertEquals(500.5, histogram.getMean());
+      assertEquals(1000, histogram.getMax());
+      assertTrue(Math.abs(histogram.getPercentile(50) - 500) <= 500 / 8);
+      assertTrue(Math.abs(histogram.getPercentile(90) - 900) <= 900 / 8);
+      assertTrue(histogram.getPercentile(99) >= 990 && histogram.getPercentile(99) <= 1000);
+      assertEquals(1000, histogram.getPercentile(100));
+   }
+
+   @Test
+   public void testNegativeDurationsAreZero() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(-5);
+      assertEquals(0, histogram.getMax());
+      assertEquals(0, histogram.getPercentile(50));
+   }
+}
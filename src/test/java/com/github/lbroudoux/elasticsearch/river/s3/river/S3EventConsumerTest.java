@@ -0,0 +1,204 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.github.lbroudoux.elasticsearch.river.s3.connector.InMemoryS3EventSource;
+/**
+ * Test case for S3EventConsumer class.
+ * @author laurent
+ */
+public class S3EventConsumerTest {
+
+   private InMemoryS3EventSource source;
+   private RecordingHandler handler;
+   private S3EventConsumer consumer;
+
+   @Before
+   public void setUp() {
+      source = new InMemoryS3EventSource("mybucket");
+      handler = new RecordingHandler();
+      consumer = new S3EventConsumer(source, "mybucket", "Work/",
+            S3KeyMatcher.compile(Arrays.asList("*.pdf"), null), handler, TimeValue.timeValueMillis(10));
+   }
+
+   @Test
+   public void shouldIndexAndDeleteTouchedKeys() throws Exception {
+      source.created("Work/doc-1.pdf", 10L, "etag1", new Date(1000L));
+      source.created("Work/movie.mkv", 10L, "etag2", new Date(1000L));
+      source.created("Other/doc-2.pdf", 10L, "etag3", new Date(1000L));
+      source.removed("Work/doc-3.pdf", new Date(1000L));
+
+      assertEquals(4, consumer.processNext());
+      assertEquals(1, handler.indexed.size());
+      S3ObjectSummary summary = handler.indexed.get(0);
+      assertEquals("Work/doc-1.pdf", summary.getKey());
+      assertEquals("mybucket", summary.getBucketName());
+      assertEquals("etag1", summary.getETag());
+      assertEquals(1000L, summary.getLastModified().getTime());
+      assertEquals(Arrays.asList("Work/doc-3.pdf"), handler.deleted);
+      // Every event is acknowledged, even ignored ones.
+      assertEquals(0, source.getInFlightCount());
+      assertEquals(0, consumer.processNext());
+   }
+
+   @Test
+   public void shouldOnlyHandleLatestEventOfKey() throws Exception {
+      source.created("Work/doc-1.pdf", 10L, "etag1", new Date(1000L));
+      source.removed("Work/doc-1.pdf", new Date(2000L));
+      source.created("Work/doc-2.pdf", 10L, "etag1", new Date(2000L));
+      source.created("Work/doc-2.pdf", 20L, "etag2", new Date(3000L));
+
+      consumer.processNext();
+      assertEquals(Arrays.asList("Work/doc-1.pdf"), handler.deleted);
+      assertEquals(1, handler.indexed.size());
+      assertEquals("etag2", handler.indexed.get(0).getETag());
+   }
+
+   @Test
+   public void shouldNotAcknowledgeEventsOnFailure() throws Exception {
+      source.created("Work/doc-1.pdf", 10L, "etag1", new Date(1000L));
+      handler.failing = true;
+      try{
+         consumer.processNext();
+         fail("Handler failure should be propagated");
+      } catch (IllegalStateException ise){
+         // Expected.
+      }
+      assertEquals(1, source.getInFlightCount());
+
+      // Event is delivered again and handled.
+      source.redeliver();
+      handler.failing = false;
+      consumer.processNext();
+      assertEquals(1, handler.indexed.size());
+      assertEquals(0, source.getInFlightCount());
+   }
+
+   @Test
+   public void shouldOnlyNotAcknowledgeEventsOfObjectsFailingIndexing() throws Exception {
+      BoundedWorkerPool pool = new BoundedWorkerPool(2, 4, Executors.defaultThreadFactory());
+      final List<String> indexedKeys = Collections.synchronizedList(new ArrayList<String>());
+      final List<String> deletedKeys = Collections.synchronizedList(new ArrayList<String>());
+      final AtomicBoolean failing = new AtomicBoolean(true);
+      S3EventIndexer indexer = new S3EventIndexer(pool, new S3EventIndexer.FileIndexer() {
+         @Override
+         public void indexFile(S3ObjectSummary summary) throws Exception {
+            if (failing.get() && summary.getKey().endsWith("doc-2.pdf")){
+               throw new IOException("Slow down");
+            }
+            if (summary.getKey().endsWith("doc-3.pdf")){
+               AmazonS3Exception notFound = new AmazonS3Exception("The specified key does not exist.");
+               notFound.setStatusCode(404);
+               notFound.setErrorCode("NoSuchKey");
+               throw notFound;
+            }
+            indexedKeys.add(summary.getKey());
+         }
+         @Override
+         public void deleteFile(String key) throws Exception {
+            deletedKeys.add(key);
+         }
+      }, new S3RiverStats());
+      consumer = new S3EventConsumer(source, "mybucket", "Work/",
+            S3KeyMatcher.compile(Arrays.asList("*.pdf"), null), indexer, TimeValue.timeValueMillis(10));
+      try{
+         source.created("Work/doc-1.pdf", 10L, "etag1", new Date(1000L));
+         source.created("Work/doc-2.pdf", 10L, "etag2", new Date(1000L));
+         source.created("Work/doc-3.pdf", 10L, "etag3", new Date(1000L));
+         assertEquals(3, consumer.processNext());
+         assertEquals(Arrays.asList("Work/doc-1.pdf"), indexedKeys);
+         // Object removed before being read is deleted from index and acknowledged.
+         assertEquals(Arrays.asList("Work/doc-3.pdf"), deletedKeys);
+         assertEquals(1, source.getInFlightCount());
+
+         // Only event of failed object is delivered again, and handled.
+         source.redeliver();
+         failing.set(false);
+         assertEquals(1, consumer.processNext());
+         assertTrue(indexedKeys.contains("Work/doc-2.pdf"));
+         assertEquals(0, source.getInFlightCount());
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   @Test
+   public void shouldLeaveEventsOnQueueWhilePaused() throws Exception {
+      source.created("Work/doc-1.pdf", 10L, "etag1", new Date(1000L));
+      consumer.setPaused(true);
+      assertEquals(0, consumer.processNext());
+      assertTrue(handler.indexed.isEmpty());
+      assertEquals(0, source.getInFlightCount());
+
+      consumer.setPaused(false);
+      assertEquals(1, consumer.processNext());
+      assertEquals(1, handler.indexed.size());
+   }
+
+   @Test
+   public void shouldStopAndCloseSourceWhenInterrupted() throws Exception {
+      Thread thread = new Thread(consumer);
+      thread.start();
+      source.created("Work/doc-1.pdf", 10L, "etag1", new Date(1000L));
+      consumer.close();
+      thread.interrupt();
+      thread.join(5000L);
+      assertFalse(thread.isAlive());
+      assertTrue(source.isClosed());
+   }
+
+   private static class RecordingHandler implements S3EventConsumer.Handler {
+
+      private final List<S3ObjectSummary> indexed = new ArrayList<S3ObjectSummary>();
+      private final List<String> deleted = new ArrayList<String>();
+      private volatile boolean failing = false;
+
+      @Override
+      public synchronized Set<String> index(List<S3ObjectSummary> summaries) throws Exception {
+         if (failing){
+            throw new IllegalStateException("Cluster unavailable");
+         }
+         indexed.addAll(summaries);
+         return Collections.emptySet();
+      }
+
+      @Override
+      public synchronized void delete(List<String> keys) throws Exception {
+         deleted.addAll(keys);
+      }
+   }
+}
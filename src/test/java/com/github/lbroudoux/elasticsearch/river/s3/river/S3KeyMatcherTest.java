@@ -0,0 +1,90 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+/**
+ * Test case for S3KeyMatcher class.
+ * @author laurent
+ */
+public class S3KeyMatcherTest {
+
+   @Test
+   public void shouldMatchEverythingWhenNoRules() {
+      assertTrue(S3KeyMatcher.ALL.isIndexable("mydoc.pdf"));
+      assertTrue(S3KeyMatcher.compile(null, null).isIndexable("mydoc.pdf"));
+      assertTrue(S3KeyMatcher.compile(Collections.<String>emptyList(), null).isIndexable("mydoc.pdf"));
+   }
+
+   @Test
+   public void shouldMatchExtensionRules() {
+      S3KeyMatcher matcher = S3KeyMatcher.compile(Arrays.asList("*.pdf", "*.doc", "*.docx"), Arrays.asList("*.mkv"));
+      assertTrue(matcher.isIndexable("Work/mydoc.pdf"));
+      assertTrue(matcher.isIndexable("Work/mydoc.doc"));
+      assertTrue(matcher.isIndexable("Work/mydoc.docx"));
+      assertFalse(matcher.isIndexable("Work/mymovie.mkv"));
+      assertFalse(matcher.isIndexable("Work/mydoc.txt"));
+      assertFalse(matcher.isIndexable("pdf"));
+   }
+
+   @Test
+   public void shouldMatchGlobRules() {
+      S3KeyMatcher matcher = S3KeyMatcher.compile(Arrays.asList("Work/*", "report-201?.xls"), Arrays.asList("Work/tmp/*"));
+      assertTrue(matcher.isIndexable("Work/mydoc.pdf"));
+      assertTrue(matcher.isIndexable("report-2013.xls"));
+      assertTrue(matcher.isIndexable("report-201.xls"));
+      assertFalse(matcher.isIndexable("report-20133.xls"));
+      assertFalse(matcher.isIndexable("Work/tmp/mydoc.pdf"));
+      assertFalse(matcher.isIndexable("Archive/mydoc.pdf"));
+   }
+
+   @Test
+   public void shouldBehaveLikeRegexRules() {
+      List<String> includes = Arrays.asList("*.pdf", "*.tar.gz", "Work/*.txt", "*.x?s");
+      List<String> excludes = Arrays.asList("*.mkv", "*/tmp/*");
+      S3KeyMatcher matcher = S3KeyMatcher.compile(includes, excludes);
+      String[] keys = {"mydoc.pdf", "Work/mydoc.pdf", "mydocpdf", "pdf", ".pdf", "archive.tar.gz", "archivetargz",
+            "Work/notes.txt", "Archive/notes.txt", "sheet.xls", "sheet.xs", "sheet.xlsx", "movie.mkv",
+            "Work/tmp/mydoc.pdf", "Work/tmp.pdf", "Work/line\nbreak.txt", "Work/tmp\n/mydoc.pdf"};
+      for (String key : keys){
+         assertEquals(key, legacyIsIndexable(key, includes, excludes), matcher.isIndexable(key));
+      }
+   }
+
+   /** Rules evaluation as it was done before matcher compilation. */
+   private static boolean legacyIsIndexable(String key, List<String> includes, List<String> excludes){
+      for (String exclude : excludes){
+         if (key.matches(exclude.replace("?", ".?").replace("*", ".*?"))){
+            return false;
+         }
+      }
+      for (String include : includes){
+         if (key.matches(include.replace("?", ".?").replace("*", ".*?"))){
+            return true;
+         }
+      }
+      return false;
+   }
+}
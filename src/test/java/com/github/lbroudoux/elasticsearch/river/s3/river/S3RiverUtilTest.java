@@ -21,7 +21,9 @@ package com.github.lbroudoux.elasticsearch.river.s3.river;
 import static junit.framework.Assert.*;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 /**
@@ -81,4 +83,50 @@ public class S3RiverUtilTest {
       // mymovie in exclusions.
       assertFalse(S3RiverUtil.isIndexable("mymovie.mkv", includes, excludes));
    }
+
+   @Test
+   public void shouldSayIsUnchangedWhenEtagAndSizeMatch() {
+      Map<String, Object> source = new HashMap<String, Object>();
+      source.put(S3RiverUtil.DOC_FIELD_ETAG, "d41d8cd98f00b204e9800998ecf8427e");
+      source.put(S3RiverUtil.DOC_FIELD_SIZE, 1024);
+      assertTrue(S3RiverUtil.isUnchanged("d41d8cd98f00b204e9800998ecf8427e", 1024L, source));
+   }
+
+   @Test
+   public void shouldNotSayIsUnchangedWhenEtagOrSizeDiffer() {
+      Map<String, Object> source = new HashMap<String, Object>();
+      source.put(S3RiverUtil.DOC_FIELD_ETAG, "d41d8cd98f00b204e9800998ecf8427e");
+      source.put(S3RiverUtil.DOC_FIELD_SIZE, 1024);
+      assertFalse(S3RiverUtil.isUnchanged("0cc175b9c0f1b6a831c399e269772661", 1024L, source));
+      assertFalse(S3RiverUtil.isUnchanged("d41d8cd98f00b204e9800998ecf8427e", 2048L, source));
+   }
+
+   @Test
+   public void shouldNotSayIsUnchangedWhenNotIndexed() {
+      assertFalse(S3RiverUtil.isUnchanged("d41d8cd98f00b204e9800998ecf8427e", 1024L, null));
+      // Documents indexed by previous versions have no etag.
+      assertFalse(S3RiverUtil.isUnchanged("d41d8cd98f00b204e9800998ecf8427e", 1024L, new HashMap<String, Object>()));
+   }
+
+   @Test
+   public void shouldComputeRangeBytesForTextFormats() {
+      assertEquals(400L, S3RiverUtil.computeRangeBytes("Work/logs/app.log", 100));
+      assertEquals(400L, S3RiverUtil.computeRangeBytes("Work/export.CSV", 100));
+      assertEquals(1600L, S3RiverUtil.computeRangeBytes("Work/index.html", 100));
+   }
+
+   @Test
+   public void shouldNotComputeRangeBytesForContainerFormats() {
+      assertEquals(-1L, S3RiverUtil.computeRangeBytes("Work/mydoc.pdf", 100));
+      assertEquals(-1L, S3RiverUtil.computeRangeBytes("Work/mydoc.docx", 100));
+      assertEquals(-1L, S3RiverUtil.computeRangeBytes("Work.txt/mydoc", 100));
+   }
+
+   @Test
+   public void shouldSayNeedsRandomAccessForContainerFormats() {
+      assertTrue(S3RiverUtil.needsRandomAccess("Work/mydoc.pdf"));
+      assertTrue(S3RiverUtil.needsRandomAccess("Work/mydoc.DOCX"));
+      assertFalse(S3RiverUtil.needsRandomAccess("Work/app.log"));
+      assertFalse(S3RiverUtil.needsRandomAccess("Work.pdf/mydoc"));
+   }
 }
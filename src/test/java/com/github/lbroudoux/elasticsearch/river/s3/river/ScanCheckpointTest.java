@@ -0,0 +1,111 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.junit.Test;
+/**
+ * Test case for ScanCheckpoint class.
+ * @author laurent
+ */
+public class ScanCheckpointTest {
+
+   @Test
+   public void shouldOnlyMoveOverContiguousCompletedPages() {
+      ScanCheckpoint checkpoint = new ScanCheckpoint(1000L, 2000L);
+      Object first = checkpoint.pageStarted("p1", "Work/b", 2);
+      Object second = checkpoint.pageStarted("p1", "Work/d", 1);
+      assertNull(checkpoint.getKey("p1"));
+
+      // Second page completes first : watermark cannot move.
+      checkpoint.taskCompleted(second);
+      assertNull(checkpoint.getKey("p1"));
+      checkpoint.taskCompleted(first);
+      assertNull(checkpoint.getKey("p1"));
+      checkpoint.taskCompleted(first);
+      assertEquals("Work/d", checkpoint.getKey("p1"));
+      assertTrue(checkpoint.isDirty());
+   }
+
+   @Test
+   public void shouldMoveOverPagesWithoutTasks() {
+      ScanCheckpoint checkpoint = new ScanCheckpoint(null, 2000L);
+      checkpoint.pageStarted("p1", "Work/b", 0);
+      assertEquals("Work/b", checkpoint.getKey("p1"));
+      checkpoint.pageStarted("p2", null, 0);
+      assertNull(checkpoint.getKey("p2"));
+   }
+
+   @Test
+   public void shouldResumeFromRecordedCheckpoint() throws Exception {
+      ScanCheckpoint checkpoint = new ScanCheckpoint(1000L, 2000L);
+      checkpoint.pageStarted("Work/|/", "Work/doc-5.pdf", 0);
+      checkpoint.pageStarted("Work/a/", "Work/a/doc-2.pdf", 0);
+
+      XContentBuilder builder = jsonBuilder().startObject();
+      checkpoint.toXContent(builder).endObject();
+      assertFalse(checkpoint.isDirty());
+      Map<String, Object> source = XContentHelper.convertToMap(builder.bytes(), false).v2();
+
+      ScanCheckpoint resumed = ScanCheckpoint.fromMap(source);
+      assertEquals(Long.valueOf(1000L), resumed.getLastScanTime());
+      assertEquals(2000L, resumed.getScanTime());
+      assertTrue(resumed.isAlreadyProcessed("Work/a/", "Work/a/doc-1.pdf"));
+      assertTrue(resumed.isAlreadyProcessed("Work/a/", "Work/a/doc-2.pdf"));
+      assertFalse(resumed.isAlreadyProcessed("Work/a/", "Work/a/doc-3.pdf"));
+      assertFalse(resumed.isAlreadyProcessed("Work/b/", "Work/b/doc-1.pdf"));
+   }
+
+   @Test
+   public void shouldResumeInterruptedScanFromWatermarks() {
+      ScanCheckpoint checkpoint = new ScanCheckpoint(1000L, 2000L);
+      Object first = checkpoint.pageStarted("p1", "Work/b", 1);
+      checkpoint.pageStarted("p1", "Work/d", 2);
+      checkpoint.taskCompleted(first);
+      // Scan is cancelled : tasks of second page never complete.
+      assertEquals("Work/b", checkpoint.getKey("p1"));
+
+      ScanCheckpoint resumed = checkpoint.resume();
+      assertEquals(Long.valueOf(1000L), resumed.getLastScanTime());
+      assertEquals(2000L, resumed.getScanTime());
+      assertTrue(resumed.isAlreadyProcessed("p1", "Work/a"));
+      assertTrue(resumed.isAlreadyProcessed("p1", "Work/b"));
+      assertFalse(resumed.isAlreadyProcessed("p1", "Work/c"));
+
+      // Resumed scan lists second page again, and moves on once it completes.
+      Object second = resumed.pageStarted("p1", "Work/d", 1);
+      resumed.taskCompleted(second);
+      assertEquals("Work/d", resumed.getKey("p1"));
+      resumed.pageStarted("p1", "Work/f", 0);
+      assertEquals("Work/f", resumed.getKey("p1"));
+   }
+
+   @Test
+   public void shouldNotResumeFromInvalidSource() {
+      assertNull(ScanCheckpoint.fromMap(null));
+      assertNull(ScanCheckpoint.fromMap(new HashMap<String, Object>()));
+   }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+/**
+ * Test case for StagingArea class.
+ * @author laurent
+ */
+public class StagingAreaTest {
+
+   private File directory;
+
+   @Before
+   public void setUp() throws Exception {
+      directory = File.createTempFile("staging", "");
+      directory.delete();
+   }
+
+   @After
+   public void tearDown() {
+      File[] files = directory.listFiles();
+      if (files != null){
+         for (File file : files){
+            file.delete();
+         }
+      }
+      directory.delete();
+   }
+
+   @Test
+   public void shouldOnlyAcceptFilesBetweenThresholdAndBudget() {
+      StagingArea area = new StagingArea(directory, 10, 100);
+      assertFalse(area.accept(10));
+      assertTrue(area.accept(11));
+      assertTrue(area.accept(100));
+      assertFalse(area.accept(101));
+      assertTrue(area.fits(10));
+      assertFalse(area.fits(101));
+   }
+
+   @Test
+   public void shouldCreateAndDeleteStagedFiles() throws Exception {
+      StagingArea area = new StagingArea(directory, 10, 100);
+      File staged = area.reserve(60);
+      assertTrue(staged.exists());
+      assertEquals(directory, staged.getParentFile());
+      assertEquals(60, area.getUsed());
+      area.release(staged, 60);
+      assertFalse(staged.exists());
+      assertEquals(0, area.getUsed());
+   }
+
+   @Test
+   public void shouldWaitForBudget() throws Exception {
+      final StagingArea area = new StagingArea(directory, 10, 100);
+      File first = area.reserve(60);
+      final CountDownLatch reserved = new CountDownLatch(1);
+      Thread thread = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            try{
+               area.reserve(60);
+               reserved.countDown();
+            } catch (Exception e){
+               // Test will fail.
+            }
+         }
+      });
+      thread.start();
+      assertFalse(reserved.await(100, TimeUnit.MILLISECONDS));
+      area.release(first, 60);
+      assertTrue(reserved.await(5, TimeUnit.SECONDS));
+      assertEquals(60, area.getUsed());
+   }
+
+   @Test
+   public void shouldPurgeLeftovers() throws Exception {
+      StagingArea area = new StagingArea(directory, 10, 100);
+      File leftover = area.reserve(20);
+      File spool = File.createTempFile("s3river", ".spool", directory);
+      File other = new File(directory, "other.txt");
+      other.createNewFile();
+      new StagingArea(directory, 10, 100).purge();
+      assertFalse(leftover.exists());
+      assertFalse(spool.exists());
+      assertTrue(other.exists());
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.lbroudoux.elasticsearch.river.s3.river;
+
+import static junit.framework.Assert.*;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.node.NodeBuilder.nodeBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.Node;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+/**
+ * Test case for UnchangedObjectFilter class, against a local node.
+ * @author laurent
+ */
+public class UnchangedObjectFilterTest {
+
+   private static File dataDirectory;
+   private static Node node;
+
+   @BeforeClass
+   public static void startNode() throws Exception {
+      dataDirectory = File.createTempFile("s3river", "-data");
+      dataDirectory.delete();
+      node = nodeBuilder().local(true).settings(ImmutableSettings.settingsBuilder()
+            .put("cluster.name", "s3river-test")
+            .put("path.data", dataDirectory.getPath())
+            .put("http.enabled", false)
+            .put("index.number_of_shards", 1)
+            .put("index.number_of_replicas", 0)).node();
+      node.client().prepareIndex("docs", "doc", "Work-doc-1.pdf")
+            .setSource(jsonBuilder().startObject()
+                  .field(S3RiverUtil.DOC_FIELD_ETAG, "etag1")
+                  .field(S3RiverUtil.DOC_FIELD_SIZE, 1000L)
+               .endObject())
+            .execute().actionGet();
+   }
+
+   @AfterClass
+   public static void stopNode() {
+      if (node != null){
+         node.close();
+      }
+      deleteRecursively(dataDirectory);
+   }
+
+   @Test
+   public void shouldFilterOutUnchangedObjects() {
+      UnchangedObjectFilter filter = new UnchangedObjectFilter(node.client(), "docs", "doc");
+      S3ObjectSummary unchanged = summary("Work/doc-1.pdf", "etag1", 1000L);
+      S3ObjectSummary overwritten = summary("Work/doc-1.pdf", "etag2", 1000L);
+      S3ObjectSummary created = summary("Work/doc-2.pdf", "etag1", 1000L);
+
+      List<S3ObjectSummary> changed = filter.filter(Arrays.asList(unchanged, overwritten, created));
+      assertEquals(2, changed.size());
+      assertSame(overwritten, changed.get(0));
+      assertSame(created, changed.get(1));
+   }
+
+   @Test
+   public void shouldKeepEveryObjectIfIndexIsMissing() {
+      UnchangedObjectFilter filter = new UnchangedObjectFilter(node.client(), "missing", "doc");
+      List<S3ObjectSummary> summaries = Arrays.asList(summary("Work/doc-1.pdf", "etag1", 1000L));
+      assertEquals(summaries, filter.filter(summaries));
+   }
+
+   private static void deleteRecursively(File file){
+      File[] children = file.listFiles();
+      if (children != null){
+         for (File child : children){
+            deleteRecursively(child);
+         }
+      }
+      file.delete();
+   }
+
+   private S3ObjectSummary summary(String key, String etag, long size){
+      S3ObjectSummary summary = new S3ObjectSummary();
+      summary.setBucketName("mybucket");
+      summary.setKey(key);
+      summary.setETag(etag);
+      summary.setSize(size);
+      summary.setLastModified(new Date(1000L));
+      return summary;
+   }
+}